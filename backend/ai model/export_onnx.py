@@ -0,0 +1,9 @@
+# Exports the Keras model to ONNX so the Spring Boot backend can run it in-process
+# (recognition.onnx.model-path). Requires: pip install tensorflow tf2onnx
+import tensorflow as tf
+import tf2onnx
+
+model = tf.keras.models.load_model("nepali_model_clean.h5")
+spec = (tf.TensorSpec((None, 64, 64, 1), tf.float32, name="input"),)
+tf2onnx.convert.from_keras(model, input_signature=spec, opset=13, output_path="nepali_model_clean.onnx")
+print("✅ Exported nepali_model_clean.onnx")
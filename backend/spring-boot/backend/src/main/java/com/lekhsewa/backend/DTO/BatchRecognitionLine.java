@@ -0,0 +1,18 @@
+package com.lekhsewa.backend.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchRecognitionLine(
+        int index,
+        String name,
+        String word,
+        Double confidence,
+        String engine,
+        String error
+) {
+
+    public static BatchRecognitionLine failed(int index, String name, String error) {
+        return new BatchRecognitionLine(index, name, null, null, null, error);
+    }
+}
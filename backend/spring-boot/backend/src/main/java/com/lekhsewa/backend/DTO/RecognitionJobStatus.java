@@ -0,0 +1,8 @@
+package com.lekhsewa.backend.DTO;
+
+public record RecognitionJobStatus(
+        String jobId,
+        String status,
+        String word,
+        String error
+) {}
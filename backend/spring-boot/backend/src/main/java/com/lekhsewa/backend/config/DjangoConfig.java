@@ -1,16 +1,38 @@
 package com.lekhsewa.backend.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class DjangoConfig {
 
     @Bean
-    public WebClient djangoClient() {
+    public WebClient djangoClient(
+            @Value("${recognition.python.base-url:http://127.0.0.1:5000}") String baseUrl,
+            @Value("${recognition.python.max-connections:20}") int maxConnections,
+            @Value("${recognition.python.connect-timeout-ms:2000}") int connectTimeoutMs,
+            @Value("${recognition.python.timeout-ms:30000}") long timeoutMs) {
+        ConnectionProvider provider = ConnectionProvider.builder("recognition-python")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofMillis(timeoutMs))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .build();
+
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(timeoutMs));
+
         return WebClient.builder()
-                .baseUrl("http://127.0.0.1:8000")
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
     }
 }
@@ -0,0 +1,52 @@
+package com.lekhsewa.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+@EnableScheduling
+public class RecognitionExecutorConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor recognitionExecutor(
+            @Value("${recognition.executor.threads:8}") int threads,
+            @Value("${recognition.executor.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("recognition-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    // Provisional live guesses only: free and frequent, so kept off the executor paid work runs on.
+    @Bean
+    public ThreadPoolTaskExecutor liveProvisionalExecutor(
+            @Value("${recognition.live.provisional-threads:2}") int threads,
+            @Value("${recognition.live.provisional-queue-capacity:16}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("live-provisional-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.initialize();
+        return executor;
+    }
+
+    // Where the reactive upload path runs its blocking steps (JPA, blob store, image decoding, engines
+    // without a non-blocking client). Bounded in threads and queued tasks so a burst cannot grow it.
+    @Bean(destroyMethod = "dispose")
+    public Scheduler recognitionBlockingScheduler(
+            @Value("${recognition.reactive.blocking-threads:16}") int threads,
+            @Value("${recognition.reactive.blocking-queue-capacity:1000}") int queueCapacity) {
+        return Schedulers.newBoundedElastic(threads, queueCapacity, "recognition-blocking");
+    }
+}
@@ -1,16 +1,22 @@
 package com.lekhsewa.backend.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.List;
+import java.util.UUID;
 
 @Configuration
 public class SecurityConfig {
@@ -23,11 +29,25 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers("/actuator/health", "/api/public/**").permitAll()
+                        .requestMatchers("/actuator/prometheus", "/actuator/metrics/**").hasRole("METRICS")
                         .anyRequest().permitAll()
-                );
+                )
+                .httpBasic(Customizer.withDefaults());
         return http.build();
     }
 
+    // The scraper's only credential. With no password configured the metrics endpoints stay locked.
+    @Bean
+    UserDetailsService metricsUser(
+            @Value("${metrics.scrape.username:prometheus}") String username,
+            @Value("${metrics.scrape.password:}") String password) {
+        String secret = password.isBlank() ? UUID.randomUUID().toString() : password;
+        return new InMemoryUserDetailsManager(User.withUsername(username)
+                .password(PasswordEncoderFactories.createDelegatingPasswordEncoder().encode(secret))
+                .roles("METRICS")
+                .build());
+    }
+
     @Bean
     CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration c = new CorsConfiguration();
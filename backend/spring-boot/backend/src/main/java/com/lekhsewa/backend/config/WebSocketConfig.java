@@ -0,0 +1,22 @@
+package com.lekhsewa.backend.config;
+
+import com.lekhsewa.backend.controller.LiveRecognitionSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final LiveRecognitionSocketHandler liveRecognitionSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(liveRecognitionSocketHandler, "/api/live")
+                .setAllowedOriginPatterns("http://localhost:3000", "https://lekhsewa.vercel.app");
+    }
+}
@@ -1,9 +1,18 @@
 package com.lekhsewa.backend.controller;
 
 import com.lekhsewa.backend.model.CanvasImage;
+import com.lekhsewa.backend.model.RecognitionJob;
 import com.lekhsewa.backend.repository.CanvasImageRepository;
+import com.lekhsewa.backend.services.BatchRecognitionService;
 import com.lekhsewa.backend.services.CanvasImageService;
+import com.lekhsewa.backend.services.ReactiveCanvasService;
+import com.lekhsewa.backend.services.RecognitionJobService;
 import com.lekhsewa.backend.services.UserServices;
+import com.lekhsewa.backend.services.WordRecognitionService;
+import com.lekhsewa.backend.services.recognition.EngineThrottledException;
+import com.lekhsewa.backend.services.recognition.RecognitionAdmission;
+import com.lekhsewa.backend.services.recognition.RecognitionRejectedException;
+import com.lekhsewa.backend.services.storage.BlobRef;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.*;
@@ -11,9 +20,13 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -23,49 +36,203 @@ public class CanvasImageController {
 
     private final CanvasImageService service;
     private final UserServices userServices;
+    private final RecognitionJobService recognitionJobService;
+    private final BatchRecognitionService batchRecognitionService;
+    private final WordRecognitionService wordRecognitionService;
+    private final RecognitionAdmission recognitionAdmission;
+    private final ReactiveCanvasService reactiveCanvasService;
+
     @PostMapping(path = "/sendcanvasimage")
     public ResponseEntity<?> sendCanvasImage(@RequestParam("file") MultipartFile file, @RequestParam ("sub") String sub) {
         try {
+            service.validateUpload(file);
 
             boolean canProcess = userServices.isUserAbleToProcessMoreImage(sub);
-            System.out.println(canProcess);
             if (!canProcess) {
-                return ResponseEntity
-                        .status(HttpStatus.TOO_MANY_REQUESTS)
-                        .body(Map.of(
-                                "error", "QUOTA_EXCEEDED",
-                                "message", "You have exceeded your daily image processing quota"
-                        ));
+                return quotaExceeded();
             }
 
 
-            String uniqueFileName = service.saveImageWaitAndReturnResponse(file);
-            Map<String, String> response = service.sendFileForTranscribe(uniqueFileName); //django bhaye si halna lahi
+            Map<String, String> response;
+            try {
+                String uniqueFileName = service.saveImageWaitAndReturnResponse(file);
+                response = service.sendFileForTranscribe(uniqueFileName); //django bhaye si halna lahi
+            } catch (Exception e) {
+                userServices.refundImageQuota(sub);
+                throw e;
+            }
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
 
 //            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("FileName", uniqueFileName)); //testing lahi matra
 
+        } catch (Exception e) {
+            return failed(e);
+        }
+    }
+
+    // Same contract as /sendcanvasimage, but the request thread is handed back once the multipart is
+    // parsed; persisting and recognizing continue on ReactiveCanvasService's pipeline.
+    @PostMapping(path = "/sendcanvasimage/reactive")
+    public Mono<ResponseEntity<?>> sendCanvasImageReactive(@RequestParam("file") MultipartFile file, @RequestParam ("sub") String sub) {
+        return reactiveCanvasService.upload(file, sub)
+                .<ResponseEntity<?>>map(result -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("word", result.word())))
+                .defaultIfEmpty(quotaExceeded())
+                .onErrorResume(e -> Mono.just(failed(e)));
+    }
+
+    // Compact stroke-vector alternative to /sendcanvasimage; see StrokeRasterizer for the format.
+    @PostMapping(path = "/sendcanvasstrokes", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> sendCanvasStrokes(@RequestBody byte[] strokes, @RequestParam ("sub") String sub) {
+        try {
+            service.validateStrokes(strokes);
+            if (!userServices.isUserAbleToProcessMoreImage(sub)) {
+                return quotaExceeded();
+            }
+
+            Map<String, String> response;
+            try {
+                CanvasImage image = service.saveStrokes(strokes);
+                response = Map.of("word", service.recognize(strokes, image.getContentType(), image.getContentHash()).word());
+            } catch (Exception e) {
+                userServices.refundImageQuota(sub);
+                throw e;
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+
+        } catch (Exception e) {
+            return failed(e);
+        }
+    }
+
+    // One canvas holding a whole word; each glyph is an engine call and is charged as one image.
+    @PostMapping(path = "/sendcanvasimage/word")
+    public ResponseEntity<?> sendCanvasWord(@RequestParam("file") MultipartFile file, @RequestParam ("sub") String sub) {
+        try {
+            service.validateUpload(file);
+            byte[] canvas = service.normalizeCanvas(file);
+            List<byte[]> glyphs = wordRecognitionService.segment(canvas);
+            if (!userServices.reserveImageQuota(sub, glyphs.size())) {
+                return quotaExceeded();
+            }
+
+            WordRecognitionService.WordResult word;
+            try {
+                BlobRef blob = service.storeNormalized(canvas);
+                service.saveImage(blob, MediaType.IMAGE_PNG_VALUE);
+                word = wordRecognitionService.recognize(canvas, blob.hash(), glyphs);
+            } catch (Exception e) {
+                userServices.refundImageQuota(sub, glyphs.size());
+                throw e;
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of(
+                    "word", word.result().word(),
+                    "glyphs", word.glyphs(),
+                    "unrecognizedGlyphs", word.unrecognized()
+            ));
+
+        } catch (Exception e) {
+            return failed(e);
+        }
+    }
+
+    @PostMapping(path = "/sendcanvasimage/async")
+    public ResponseEntity<?> sendCanvasImageAsync(@RequestParam("file") MultipartFile file, @RequestParam ("sub") String sub) {
+        try {
+            service.validateUpload(file);
+            if (!userServices.isUserAbleToProcessMoreImage(sub)) {
+                return quotaExceeded();
+            }
+
+            RecognitionJob job;
+            try {
+                job = recognitionJobService.submit(service.storeCanvas(file), MediaType.IMAGE_PNG_VALUE, sub);
+            } catch (IOException | RuntimeException e) {
+                userServices.refundImageQuota(sub);
+                throw e;
+            }
+            return ResponseEntity
+                    .accepted()
+                    .location(URI.create("/api/recognition/" + job.getId()))
+                    .body(RecognitionJobService.status(job));
+
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Could not read upload"));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
-            String msg = e.getMessage() == null ? "" : e.getMessage().toLowerCase();
-            if (msg.contains("429") || msg.contains("too many request")) {
-                return ResponseEntity
-                        .status(HttpStatus.SERVICE_UNAVAILABLE)
-                        .body(Map.of(
-                                "error", "SERVER_ISSUE",
-                                "message", "Server issue, try again"
-                        ));
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Processing failed", "detail", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @PostMapping(path = "/sendcanvasimage/batch")
+    public ResponseEntity<?> sendCanvasImageBatch(@RequestParam("files") List<MultipartFile> files, @RequestParam ("sub") String sub) {
+        try {
+            List<BatchRecognitionService.Item> items = batchRecognitionService.read(files);
+            int accepted = (int) BatchRecognitionService.accepted(items);
+            if (accepted > 0 && !userServices.reserveImageQuota(sub, accepted)) {
+                return quotaExceeded();
             }
+
+            StreamingResponseBody body = out -> batchRecognitionService.recognizeAndStream(items, sub, out);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(body);
+
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Could not read upload"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Processing failed", "detail", String.valueOf(e.getMessage())));
+        }
+    }
+
+    // Shared error mapping for the recognition endpoints, sync and reactive alike.
+    private ResponseEntity<?> failed(Throwable e) {
+        if (e instanceof IllegalArgumentException) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+        if (e instanceof RecognitionRejectedException rejected) {
+            return serverBusy(rejected.getRetryAfterSeconds());
+        }
+        if (e instanceof EngineThrottledException) {
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(recognitionAdmission.retryAfterSeconds()))
+                    .body(Map.of(
+                            "error", "SERVER_ISSUE",
+                            "message", "Server issue, try again"
+                    ));
+        }
+        if (e instanceof RuntimeException) {
             return ResponseEntity
                     .status(HttpStatus.BAD_GATEWAY)
-                    .body(Map.of("error", e.getMessage()));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Processing failed", "detail", e.getMessage()));
+                    .body(Map.of("error", String.valueOf(e.getMessage())));
         }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Processing failed", "detail", String.valueOf(e.getMessage())));
     }
 
+    private static ResponseEntity<Map<String, String>> serverBusy(long retryAfterSeconds) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(Map.of(
+                        "error", "SERVER_BUSY",
+                        "message", "Too many images in progress, try again"
+                ));
+    }
+
+    private static ResponseEntity<Map<String, String>> quotaExceeded() {
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .body(Map.of(
+                        "error", "QUOTA_EXCEEDED",
+                        "message", "You have exceeded your daily image processing quota"
+                ));
+    }
 
     @GetMapping(path = "/test/{id}")
     public ResponseEntity<String> getByteOfImage(@PathVariable long id) throws Exception {
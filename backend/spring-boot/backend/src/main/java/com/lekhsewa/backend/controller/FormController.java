@@ -1,20 +1,24 @@
 package com.lekhsewa.backend.controller;
 
-import com.lekhsewa.backend.DTO.FormDataCombinedDTO;
+import com.lekhsewa.backend.DTO.CursorPage;
 import com.lekhsewa.backend.DTO.FormSummary;
+import com.lekhsewa.backend.services.FormDefinitionCache;
 import com.lekhsewa.backend.services.FormService;
 import org.springframework.data.domain.Page;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/")
 public class FormController {
   private final FormService service;
+  private final FormDefinitionCache definitions;
 
-  public FormController(FormService service) {
+  public FormController(FormService service, FormDefinitionCache definitions) {
     this.service = service;
+    this.definitions = definitions;
   }
 
   @GetMapping("/search")
@@ -26,8 +30,21 @@ public class FormController {
     return service.search(q, page, size);
   }
 
+  @GetMapping("/search/cursor")
+  public ResponseEntity<CursorPage<FormSummary>> searchAfter(
+      @RequestParam(defaultValue = "") String q,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "10") int size
+  ) {
+    try {
+      return ResponseEntity.ok(service.searchAfter(q, cursor, size));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+  }
+
   @GetMapping("/suggest")
-  public Page<FormSummary> suggest(
+  public List<FormSummary> suggest(
       @RequestParam(defaultValue = "") String q,
       @RequestParam(defaultValue = "8") int limit
   ) {
@@ -35,11 +52,33 @@ public class FormController {
   }
 
   @GetMapping("/getformdata/{id}")
-    public ResponseEntity<FormDataCombinedDTO> getFormData(@PathVariable Long id) {
+    public ResponseEntity<byte[]> getFormData(
+          @PathVariable Long id,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+  ) {
+      FormDefinitionCache.CachedForm form;
       try {
-          return ResponseEntity.ok(service.getForm(id));
+          form = definitions.get(id);
       } catch (IllegalArgumentException e) {
           return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
       }
+
+      if (ifNoneMatch != null && ifNoneMatch.contains(form.etag())) {
+          return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                  .eTag(form.etag())
+                  .cacheControl(CacheControl.noCache())
+                  .build();
+      }
+
+      ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+              .contentType(MediaType.APPLICATION_JSON)
+              .eTag(form.etag())
+              .cacheControl(CacheControl.noCache())
+              .varyBy(HttpHeaders.ACCEPT_ENCODING);
+      if (form.gzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+          return ok.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(form.gzip());
+      }
+      return ok.body(form.json());
   }
 }
@@ -0,0 +1,109 @@
+package com.lekhsewa.backend.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lekhsewa.backend.services.LiveRecognitionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.Map;
+
+// JSON messages on /api/live, one character per drawing:
+//   {"type":"start","sub":"...","width":400,"height":400,"lineWidth":8}
+//   {"type":"down","x":10,"y":20,"t":0}
+//   {"type":"move","points":[x, y, t, x, y, t, ...]}
+//   {"type":"up"}   {"type":"commit"}   {"type":"clear"}
+// Server replies: provisional (top-k candidates), committed (charged result) and error.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LiveRecognitionSocketHandler extends TextWebSocketHandler {
+
+    private static final String SESSION = "liveSession";
+    private static final String OUT = "liveOut";
+
+    private final LiveRecognitionService liveRecognitionService;
+    private final ObjectMapper objectMapper;
+
+    // Replies come from recognition threads as well as this one, so all sends go through a decorator.
+    @Override
+    public void afterConnectionEstablished(WebSocketSession socket) {
+        socket.getAttributes().put(OUT, new ConcurrentWebSocketSessionDecorator(socket, 5_000, 256 * 1024));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession socket, TextMessage message) throws Exception {
+        try {
+            JsonNode msg = objectMapper.readTree(message.getPayload());
+            String type = msg.path("type").asText();
+            if (type.equals("start")) {
+                WebSocketSession out = (WebSocketSession) socket.getAttributes().get(OUT);
+                LiveRecognitionService.Session previous = session(socket);
+                if (previous != null) {
+                    previous.close();
+                }
+                socket.getAttributes().put(SESSION, liveRecognitionService.open(
+                        msg.path("sub").asText(null),
+                        msg.path("width").asInt(),
+                        msg.path("height").asInt(),
+                        msg.path("lineWidth").asInt(),
+                        reply -> send(out, reply)));
+                return;
+            }
+
+            LiveRecognitionService.Session session = session(socket);
+            if (session == null) {
+                throw new IllegalArgumentException("Send start first");
+            }
+            switch (type) {
+                case "down" -> session.penDown(msg.path("x").asInt(), msg.path("y").asInt(), msg.path("t").asInt());
+                case "move" -> session.move(points(msg));
+                case "up" -> session.penUp();
+                case "commit" -> session.commit();
+                case "clear" -> session.clear();
+                default -> throw new IllegalArgumentException("Unknown message type: " + type);
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            send((WebSocketSession) socket.getAttributes().get(OUT), Map.of("type", "error", "error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession socket, CloseStatus status) {
+        LiveRecognitionService.Session session = session(socket);
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    // Flat x, y, t triples; a missing or non-array field would otherwise bind to null.
+    private int[] points(JsonNode msg) throws IOException {
+        JsonNode points = msg.path("points");
+        if (!points.isArray()) {
+            throw new IllegalArgumentException("move needs a points array");
+        }
+        return objectMapper.treeToValue(points, int[].class);
+    }
+
+    private static LiveRecognitionService.Session session(WebSocketSession socket) {
+        return (LiveRecognitionService.Session) socket.getAttributes().get(SESSION);
+    }
+
+    private void send(WebSocketSession out, Map<String, Object> reply) {
+        if (!out.isOpen()) {
+            return;
+        }
+        try {
+            out.sendMessage(new TextMessage(objectMapper.writeValueAsString(reply)));
+        } catch (IOException e) {
+            log.debug("Live recognition reply dropped: {}", e.toString());
+        }
+    }
+}
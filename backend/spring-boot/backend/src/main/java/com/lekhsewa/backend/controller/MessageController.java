@@ -2,20 +2,32 @@ package com.lekhsewa.backend.controller;
 
 
 import com.lekhsewa.backend.DTO.CreateMessageRequest;
-import com.lekhsewa.backend.model.Message;
-import com.lekhsewa.backend.repository.MessageRepository;
+import com.lekhsewa.backend.services.MessageIngestBuffer;
+import com.lekhsewa.backend.services.MessageService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/message")
 public class MessageController {
 
-    private final MessageRepository messageRepository;
+    // full_name and email are VARCHAR(255) (V9); longer values would fail the whole ingest batch.
+    private static final int MAX_FIELD_LENGTH = 255;
+
+    private final MessageService messageService;
+    private final MessageIngestBuffer messageIngestBuffer;
 
-    public MessageController(MessageRepository messageRepository) {
-        this.messageRepository = messageRepository;
+    public MessageController(MessageService messageService, MessageIngestBuffer messageIngestBuffer) {
+        this.messageService = messageService;
+        this.messageIngestBuffer = messageIngestBuffer;
     }
 
     @PostMapping
@@ -30,22 +42,66 @@ public class MessageController {
                     .badRequest()
                     .body("All fields are required");
         }
+        if (tooLong(request.getFullName()) || tooLong(request.getEmail())) {
+            return ResponseEntity
+                    .badRequest()
+                    .body("Name and email must be at most " + MAX_FIELD_LENGTH + " characters");
+        }
 
-        Message message = new Message();
-        message.setFullName(request.getFullName());
-        message.setEmail(request.getEmail());
-        message.setMessage(request.getMessage());
-
-        messageRepository.save(message);
+        boolean queued = messageIngestBuffer.offer(new MessageIngestBuffer.PendingMessage(
+                request.getFullName(),
+                request.getEmail(),
+                request.getMessage(),
+                OffsetDateTime.now()
+        ));
+        if (!queued) {
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(Map.of("error", "Too many messages right now, please try again shortly"));
+        }
 
         return ResponseEntity
-                .status(HttpStatus.CREATED)
+                .status(HttpStatus.ACCEPTED)
                 .body("Message received");
     }
 
+    // Same JSON array as before, but streamed row by row instead of built in memory.
     @GetMapping("/getAll")
-    public ResponseEntity<?> getAllMessage() {
-        Message[] messages = messageRepository.findAll().toArray(new Message[0]);
-        return ResponseEntity.ok(messages);
+    public ResponseEntity<StreamingResponseBody> getAllMessage() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> messageService.export(null, null, null, MessageService.ExportFormat.JSON_ARRAY, out));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportMessages(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(required = false) String email
+    ) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"messages.ndjson\"")
+                .body(out -> messageService.export(from, to, email, MessageService.ExportFormat.NDJSON, out));
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<?> getMessagePage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        try {
+            return ResponseEntity.ok(messageService.page(cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private static boolean tooLong(String value) {
+        return value.codePointCount(0, value.length()) > MAX_FIELD_LENGTH;
     }
 }
@@ -0,0 +1,57 @@
+package com.lekhsewa.backend.controller;
+
+import com.lekhsewa.backend.DTO.RecognitionJobStatus;
+import com.lekhsewa.backend.services.RecognitionJobService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+@RestController
+@RequestMapping("/api/recognition")
+public class RecognitionJobController {
+
+    private final RecognitionJobService recognitionJobService;
+    private final long sseTimeoutMillis;
+
+    public RecognitionJobController(
+            RecognitionJobService recognitionJobService,
+            @Value("${recognition.jobs.sse-timeout-ms:60000}") long sseTimeoutMillis) {
+        this.recognitionJobService = recognitionJobService;
+        this.sseTimeoutMillis = sseTimeoutMillis;
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<RecognitionJobStatus> getJob(@PathVariable String jobId) {
+        return recognitionJobService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    @GetMapping(path = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJob(@PathVariable String jobId) {
+        if (recognitionJobService.find(jobId).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Job not found: " + jobId);
+        }
+
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        Consumer<RecognitionJobStatus> listener = status -> {
+            try {
+                emitter.send(SseEmitter.event().name("result").data(status));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        };
+        emitter.onTimeout(() -> recognitionJobService.unwatch(jobId, listener));
+        emitter.onError(e -> recognitionJobService.unwatch(jobId, listener));
+        recognitionJobService.watch(jobId, listener);
+        return emitter;
+    }
+}
@@ -14,9 +14,7 @@ public class UserController {
 
     @GetMapping(path = "/getuserplan")
     public ResponseEntity<String> getUserPlan (@RequestParam ("sub") String sub){
-        System.out.println("getUserPlan: "+sub);
         String planType = userServices.lookUpUserPlan(sub);
-        System.out.println(planType);
         return ResponseEntity.ok(planType);
     }
 
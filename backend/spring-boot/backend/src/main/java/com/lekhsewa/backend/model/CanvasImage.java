@@ -2,8 +2,6 @@ package com.lekhsewa.backend.model;
 
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.JdbcTypeCode;
-import org.hibernate.type.SqlTypes;
 
 import java.time.OffsetDateTime;
 
@@ -26,9 +24,11 @@ public class CanvasImage {
     @Column(name = "content_type", nullable = false)
     private String contentType = "image/png";
 
-    @JdbcTypeCode(SqlTypes.VARBINARY)
-    @Column(name = "image_data", nullable = false, columnDefinition = "bytea")
-    private byte[] imageData;
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
 
     @Column(name = "uploaded_at", nullable = false)
     private OffsetDateTime uploadedAt = OffsetDateTime.now();
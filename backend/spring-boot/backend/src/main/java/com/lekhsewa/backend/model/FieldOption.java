@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
+@EntityListeners(FormChangeListener.class)
 @Table(
   name = "field_options"
 )
@@ -0,0 +1,39 @@
+package com.lekhsewa.backend.model;
+
+import com.lekhsewa.backend.services.search.FormsChangedEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Component
+@RequiredArgsConstructor
+public class FormChangeListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    // Saving one form touches every field and option row; listeners only need to hear about the
+    // transaction once, so later rows in the same transaction are skipped.
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            boolean published = TransactionSynchronizationManager.getSynchronizations().stream()
+                    .anyMatch(Published.class::isInstance);
+            if (published) {
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new Published());
+        }
+        publisher.publishEvent(new FormsChangedEvent());
+    }
+
+    // Marks the current transaction as already announced; suspended and resumed with it.
+    private static final class Published implements TransactionSynchronization {
+    }
+}
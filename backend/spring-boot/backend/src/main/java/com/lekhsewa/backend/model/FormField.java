@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@EntityListeners(FormChangeListener.class)
 @Table(
   name = "form_fields"
 )
@@ -0,0 +1,72 @@
+package com.lekhsewa.backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "recognition_job")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecognitionJob {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "auth0_sub", nullable = false)
+    private String auth0Sub;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(nullable = false, length = 16)
+    private String state = QUEUED;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private OffsetDateTime nextAttemptAt;
+
+    @Column(name = "locked_by", length = 128)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private OffsetDateTime lockedUntil;
+
+    @Column(columnDefinition = "TEXT")
+    private String word;
+
+    private Double confidence;
+
+    @Column(length = 32)
+    private String engine;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+
+    public boolean isFinished() {
+        return DONE.equals(state) || FAILED.equals(state);
+    }
+}
@@ -11,4 +11,45 @@ import java.util.Optional;
 public interface AppUserRepository extends JpaRepository<AppUser, Long> {
 
     Optional<AppUser> findByAuth0Sub(String sub);
+
+    boolean existsByAuth0Sub(String sub);
+
+    @Query(value = """
+            UPDATE app_user
+            SET quota = CASE WHEN plan = 'paid' THEN quota ELSE quota + 1 END,
+                updated_at = now()
+            WHERE auth0_sub = :sub AND (plan = 'paid' OR quota < :limit)
+            RETURNING plan
+            """, nativeQuery = true)
+    Optional<String> reserveQuota(@Param("sub") String sub, @Param("limit") int limit);
+
+    // All-or-nothing reservation of count images, used by batch uploads.
+    @Query(value = """
+            UPDATE app_user
+            SET quota = CASE WHEN plan = 'paid' THEN quota ELSE quota + :count END,
+                updated_at = now()
+            WHERE auth0_sub = :sub AND (plan = 'paid' OR quota + :count <= :limit)
+            RETURNING plan
+            """, nativeQuery = true)
+    Optional<String> reserveQuota(@Param("sub") String sub, @Param("limit") int limit, @Param("count") int count);
+
+    @Modifying
+    @Query(value = """
+            UPDATE app_user
+            SET quota = quota - 1, updated_at = now()
+            WHERE auth0_sub = :sub AND plan = 'free' AND quota > 0
+            """, nativeQuery = true)
+    int refundQuota(@Param("sub") String sub);
+
+    @Modifying
+    @Query(value = """
+            UPDATE app_user
+            SET quota = GREATEST(quota - :count, 0), updated_at = now()
+            WHERE auth0_sub = :sub AND plan = 'free' AND quota > 0
+            """, nativeQuery = true)
+    int refundQuota(@Param("sub") String sub, @Param("count") int count);
+
+    @Modifying
+    @Query(value = "UPDATE app_user SET quota = 0, updated_at = now() WHERE quota <> 0", nativeQuery = true)
+    int resetAllQuotas();
 }
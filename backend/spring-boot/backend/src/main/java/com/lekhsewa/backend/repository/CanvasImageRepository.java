@@ -2,10 +2,17 @@ package com.lekhsewa.backend.repository;
 
 import com.lekhsewa.backend.model.CanvasImage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface CanvasImageRepository extends JpaRepository<CanvasImage, Long> {
     Optional<CanvasImage> findByFileName(String fileName);
     Optional<CanvasImage> findById(long id);
+    Optional<CanvasImage> findByContentHash(String contentHash);
+
+    // Rows uploaded before the blob store still carry their PNG in image_data.
+    @Query(value = "select image_data from canvas_image where id = :id", nativeQuery = true)
+    byte[] findLegacyImageData(@Param("id") Long id);
 }
@@ -2,6 +2,8 @@ package com.lekhsewa.backend.repository;
 
 import com.lekhsewa.backend.model.FormField;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,4 +12,9 @@ import java.util.List;
 public interface FormFieldRepository extends JpaRepository<FormField, Long> {
   List<FormField> findByFormIdOrderByIdAsc(Long formId);
   boolean existsByFormIdAndFieldName(Long formId, String fieldName);
+
+  // Fills the options of every field of the form in one query; fields and options are both bags,
+  // so they cannot be join-fetched together with the form.
+  @Query("select distinct ff from FormField ff left join fetch ff.options where ff.form.id = :formId")
+  List<FormField> fetchOptionsByFormId(@Param("formId") Long formId);
 }
@@ -1,22 +1,28 @@
 package com.lekhsewa.backend.repository;
 
+import com.lekhsewa.backend.DTO.FormSummary;
 import com.lekhsewa.backend.model.Form;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface FormRepository extends JpaRepository<Form, Long> {
 
-    @Query("select f from Form f where lower(f.name) like lower(concat('%', :q, '%'))")
-    Page<Form> searchByNameContains(@Param("q") String q, Pageable pageable);
-
-    @Query("select f from Form f where lower(f.name) like lower(concat(:q, '%'))")
-    Page<Form> suggestByNamePrefix(@Param("q") String q, Pageable pageable);
+    @Query("select new com.lekhsewa.backend.DTO.FormSummary(f.id, f.name, f.description) from Form f")
+    List<FormSummary> findAllSummaries();
 
+    @Query("select distinct f from Form f left join fetch f.fields where f.id = :id")
     Optional<Form> findGraphById(@Param("id") Long id);
+
+    // Changes whenever any form, field or option row does, however it was written.
+    @Query(value = """
+            SELECT md5(coalesce((SELECT string_agg(concat_ws('|', id, name, description), ',' ORDER BY id) FROM forms), '')
+                || coalesce((SELECT string_agg(concat_ws('|', id, form_id, label, field_name, type, required, nepali_text), ',' ORDER BY id) FROM form_fields), '')
+                || coalesce((SELECT string_agg(concat_ws('|', id, field_id, opt_value, opt_label), ',' ORDER BY id) FROM field_options), ''))
+            """, nativeQuery = true)
+    String catalogueFingerprint();
 }
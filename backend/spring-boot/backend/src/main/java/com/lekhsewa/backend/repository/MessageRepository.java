@@ -2,6 +2,23 @@ package com.lekhsewa.backend.repository;
 
 import com.lekhsewa.backend.model.Message;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
+
+    @Query(value = "select * from message order by created_at desc, id desc limit :limit", nativeQuery = true)
+    List<Message> findNewest(@Param("limit") int limit);
+
+    // Row-value comparison so Postgres can seek straight into idx_message_created_at_id.
+    @Query(value = """
+            select * from message
+            where (created_at, id) < (:createdAt, :id)
+            order by created_at desc, id desc
+            limit :limit
+            """, nativeQuery = true)
+    List<Message> findOlderThan(@Param("createdAt") OffsetDateTime createdAt, @Param("id") Long id, @Param("limit") int limit);
 }
@@ -0,0 +1,89 @@
+package com.lekhsewa.backend.repository;
+
+import com.lekhsewa.backend.model.RecognitionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface RecognitionJobRepository extends JpaRepository<RecognitionJob, String> {
+
+    // SKIP LOCKED lets every instance claim concurrently without ever handing one job to two workers.
+    // Running jobs whose lease ran out (their worker died) are claimed again.
+    // The column list leaves out payload so claiming never ships the image back.
+    @Query(value = """
+            UPDATE recognition_job
+            SET state = 'RUNNING', attempts = attempts + 1, locked_by = :worker,
+                locked_until = now() + make_interval(secs => :leaseSeconds), updated_at = now()
+            WHERE id IN (
+                SELECT id FROM recognition_job
+                WHERE (state = 'QUEUED' AND next_attempt_at <= now())
+                   OR (state = 'RUNNING' AND locked_until < now())
+                ORDER BY next_attempt_at
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING id, auth0_sub, content_hash, content_type, size_bytes, state, attempts, next_attempt_at,
+                      locked_by, locked_until, word, confidence, engine, error, created_at, updated_at
+            """, nativeQuery = true)
+    List<RecognitionJob> claim(@Param("worker") String worker, @Param("limit") int limit, @Param("leaseSeconds") long leaseSeconds);
+
+    // The locked_by guard drops late writes from a worker whose lease has already been taken over.
+    @Modifying
+    @Query(value = """
+            UPDATE recognition_job
+            SET state = 'DONE', word = :word, confidence = :confidence, engine = :engine, error = NULL,
+                payload = NULL, locked_by = NULL, locked_until = NULL, updated_at = now()
+            WHERE id = :id AND locked_by = :worker AND state = 'RUNNING'
+            """, nativeQuery = true)
+    int complete(@Param("id") String id, @Param("worker") String worker,
+                 @Param("word") String word, @Param("confidence") Double confidence, @Param("engine") String engine);
+
+    @Modifying
+    @Query(value = """
+            UPDATE recognition_job
+            SET state = 'QUEUED', error = :error, next_attempt_at = now() + make_interval(secs => :delaySeconds),
+                locked_by = NULL, locked_until = NULL, updated_at = now()
+            WHERE id = :id AND locked_by = :worker AND state = 'RUNNING'
+            """, nativeQuery = true)
+    int retryLater(@Param("id") String id, @Param("worker") String worker,
+                   @Param("error") String error, @Param("delaySeconds") double delaySeconds);
+
+    // Hands a claimed job back without spending an attempt, e.g. when the local pool is saturated.
+    @Modifying
+    @Query(value = """
+            UPDATE recognition_job
+            SET state = 'QUEUED', attempts = attempts - 1, locked_by = NULL, locked_until = NULL, updated_at = now()
+            WHERE id = :id AND locked_by = :worker AND state = 'RUNNING'
+            """, nativeQuery = true)
+    int release(@Param("id") String id, @Param("worker") String worker);
+
+    @Modifying
+    @Query(value = """
+            UPDATE recognition_job
+            SET state = 'FAILED', error = :error, payload = NULL, locked_by = NULL, locked_until = NULL, updated_at = now()
+            WHERE id = :id AND locked_by = :worker AND state = 'RUNNING'
+            """, nativeQuery = true)
+    int fail(@Param("id") String id, @Param("worker") String worker, @Param("error") String error);
+
+    // The payload is kept out of the entity so status lookups never load the image.
+    @Modifying
+    @Query(value = "UPDATE recognition_job SET payload = :payload WHERE id = :id", nativeQuery = true)
+    int storePayload(@Param("id") String id, @Param("payload") byte[] payload);
+
+    @Query(value = "SELECT payload FROM recognition_job WHERE id = :id", nativeQuery = true)
+    byte[] findPayload(@Param("id") String id);
+
+    long countByState(String state);
+
+    @Query("select j from RecognitionJob j where j.id in :ids and j.state in ('DONE', 'FAILED')")
+    List<RecognitionJob> findFinished(@Param("ids") Collection<String> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM recognition_job WHERE state IN ('DONE', 'FAILED') AND updated_at < :cutoff", nativeQuery = true)
+    int deleteFinishedBefore(@Param("cutoff") OffsetDateTime cutoff);
+}
@@ -0,0 +1,259 @@
+package com.lekhsewa.backend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lekhsewa.backend.DTO.BatchRecognitionLine;
+import com.lekhsewa.backend.services.preprocessing.PngHeaderValidator;
+import com.lekhsewa.backend.services.recognition.EngineThrottledException;
+import com.lekhsewa.backend.services.recognition.RecognitionRejectedException;
+import com.lekhsewa.backend.services.recognition.RecognitionResult;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Many canvases in one request: header checks up front, one quota reservation, one batched insert,
+// then the images are recognized in parallel (at most max-in-flight of one batch at a time, so a few
+// large batches cannot fill the shared recognition executor) and each result is streamed as soon as
+// it is ready.
+@Service
+public class BatchRecognitionService {
+
+    private final CanvasImageService canvasImageService;
+    private final UserServices userServices;
+    private final PngHeaderValidator pngHeaderValidator;
+    private final ThreadPoolTaskExecutor recognitionExecutor;
+    private final ObjectMapper objectMapper;
+    private final int maxFiles;
+    private final long maxEntryBytes;
+    private final int maxEntries;
+    private final long maxInflatedBytes;
+    private final int maxInFlight;
+
+    public BatchRecognitionService(
+            CanvasImageService canvasImageService,
+            UserServices userServices,
+            PngHeaderValidator pngHeaderValidator,
+            @Qualifier("recognitionExecutor") ThreadPoolTaskExecutor recognitionExecutor,
+            ObjectMapper objectMapper,
+            @Value("${upload.batch.max-files:64}") int maxFiles,
+            @Value("${upload.max-bytes:2097152}") long maxEntryBytes,
+            @Value("${upload.batch.max-entries:256}") int maxEntries,
+            @Value("${upload.batch.max-inflated-bytes:67108864}") long maxInflatedBytes,
+            @Value("${upload.batch.max-in-flight:4}") int maxInFlight) {
+        this.canvasImageService = canvasImageService;
+        this.userServices = userServices;
+        this.pngHeaderValidator = pngHeaderValidator;
+        this.recognitionExecutor = recognitionExecutor;
+        this.objectMapper = objectMapper;
+        this.maxFiles = maxFiles;
+        this.maxEntryBytes = maxEntryBytes;
+        this.maxEntries = maxEntries;
+        this.maxInflatedBytes = maxInflatedBytes;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public record Item(int index, String name, byte[] bytes, String error) {}
+
+    private record Stored(Item item, CanvasImageService.StoredCanvas canvas) {}
+
+    // Flattens PNG parts and zip archives of PNGs into one numbered list and header-checks each image.
+    // Items that fail the check carry an error and are not charged against the quota.
+    public List<Item> read(List<MultipartFile> files) throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (MultipartFile file : files) {
+            if (isZip(file)) {
+                readZip(file, items);
+            } else {
+                checkCount(items.size());
+                items.add(check(items.size(), file.getOriginalFilename(), file.getBytes()));
+            }
+        }
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("No images in batch");
+        }
+        return items;
+    }
+
+    public static long accepted(List<Item> items) {
+        return items.stream().filter(item -> item.error() == null).count();
+    }
+
+    // Quota for every accepted item must already be reserved; whatever does not end in a word is refunded.
+    public void recognizeAndStream(List<Item> items, String sub, OutputStream out) throws IOException {
+        BlockingQueue<BatchRecognitionLine> lines = new LinkedBlockingQueue<>();
+        List<Stored> stored = new ArrayList<>();
+        int charged = 0;
+        for (Item item : items) {
+            if (item.error() != null) {
+                lines.add(BatchRecognitionLine.failed(item.index(), item.name(), item.error()));
+                continue;
+            }
+            charged++;
+            try {
+                stored.add(new Stored(item, canvasImageService.storeCanvas(item.bytes())));
+            } catch (IllegalArgumentException | IOException e) {
+                lines.add(BatchRecognitionLine.failed(item.index(), item.name(), e.getMessage()));
+            }
+        }
+
+        AtomicInteger failed = new AtomicInteger(charged - stored.size());
+        if (!stored.isEmpty()) {
+            try {
+                canvasImageService.saveImages(stored.stream().map(s -> s.canvas().blob()).toList(), MediaType.IMAGE_PNG_VALUE);
+            } catch (RuntimeException e) {
+                userServices.refundImageQuota(sub, charged);
+                throw e;
+            }
+        }
+
+        Queue<Stored> todo = new ConcurrentLinkedQueue<>(stored);
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (int i = 0; i < Math.min(maxInFlight, stored.size()); i++) {
+            lanes.add(lane(todo, lines, failed));
+        }
+        // Refund once every image has settled, even if the client has gone away mid-stream.
+        CompletableFuture.allOf(lanes.toArray(CompletableFuture[]::new))
+                .whenComplete((v, e) -> userServices.refundImageQuota(sub, failed.get()));
+
+        try {
+            for (int written = 0; written < items.size(); written++) {
+                out.write(objectMapper.writeValueAsBytes(lines.take()));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Recognizes queued images one after another until none are left.
+    private CompletableFuture<Void> lane(Queue<Stored> todo, BlockingQueue<BatchRecognitionLine> lines, AtomicInteger failed) {
+        Stored s = todo.poll();
+        if (s == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return recognize(s.canvas()).handle((result, error) -> {
+            if (error == null) {
+                lines.add(new BatchRecognitionLine(s.item().index(), s.item().name(), result.word(), result.confidence(), result.engine(), null));
+            } else {
+                failed.incrementAndGet();
+                lines.add(BatchRecognitionLine.failed(s.item().index(), s.item().name(), describe(error)));
+            }
+            return null;
+        }).thenCompose(ignored -> lane(todo, lines, failed));
+    }
+
+    private CompletableFuture<RecognitionResult> recognize(CanvasImageService.StoredCanvas canvas) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return canvasImageService.recognize(canvas.bytes(), MediaType.IMAGE_PNG_VALUE, canvas.blob().hash());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }, recognitionExecutor);
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.failedFuture(new RecognitionRejectedException("Recognition queue is full", 1));
+        }
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof RecognitionRejectedException) {
+            return "SERVER_BUSY";
+        }
+        if (cause instanceof EngineThrottledException) {
+            return "SERVER_ISSUE";
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return cause.getMessage();
+        }
+        return "Processing failed";
+    }
+
+    private Item check(int index, String name, byte[] bytes) {
+        try {
+            pngHeaderValidator.validate(bytes);
+            return new Item(index, name, bytes, null);
+        } catch (IllegalArgumentException e) {
+            return new Item(index, name, null, e.getMessage());
+        }
+    }
+
+    private void checkCount(int count) {
+        if (count >= maxFiles) {
+            throw new IllegalArgumentException("Batch has more than " + maxFiles + " images");
+        }
+    }
+
+    // ZipInputStream can only reach the next entry by inflating the rest of the current one, so every
+    // entry (PNG or not) counts against maxEntries and every inflated byte, skipped ones included,
+    // against maxInflatedBytes. A PNG entry is read to one byte past the image limit; the rest of an
+    // oversized entry is inflated and discarded under the same budget.
+    private void readZip(MultipartFile file, List<Item> items) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+            long inflated = 0;
+            int entries = 0;
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (++entries > maxEntries) {
+                    throw new IllegalArgumentException("Archive has more than " + maxEntries + " entries");
+                }
+                if (!entry.isDirectory() && entry.getName().toLowerCase().endsWith(".png")) {
+                    checkCount(items.size());
+                    byte[] bytes = zip.readNBytes((int) Math.min(maxEntryBytes + 1, maxInflatedBytes - inflated + 1));
+                    inflated = checkInflated(inflated + bytes.length);
+                    items.add(check(items.size(), entry.getName(), bytes));
+                }
+                inflated = checkInflated(inflated + discard(zip, maxInflatedBytes - inflated + 1));
+            }
+        }
+    }
+
+    private long checkInflated(long inflated) {
+        if (inflated > maxInflatedBytes) {
+            throw new IllegalArgumentException("Archive expands to more than " + maxInflatedBytes + " bytes");
+        }
+        return inflated;
+    }
+
+    // Inflates and drops up to limit bytes of the current entry; returns how many there were.
+    private static long discard(InputStream zip, long limit) throws IOException {
+        long total = 0;
+        while (total < limit) {
+            long skipped = zip.skip(limit - total);
+            if (skipped <= 0) {
+                break;
+            }
+            total += skipped;
+        }
+        return total;
+    }
+
+    private static boolean isZip(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        return "application/zip".equals(file.getContentType())
+                || "application/x-zip-compressed".equals(file.getContentType())
+                || (name != null && name.toLowerCase().endsWith(".zip"));
+    }
+}
@@ -1,155 +1,266 @@
 package com.lekhsewa.backend.services;
 
 
-import com.google.genai.Client;
-import com.google.genai.types.Content;
-import com.google.genai.types.GenerateContentResponse;
-import com.google.genai.types.Part;
 import com.lekhsewa.backend.model.CanvasImage;
 import com.lekhsewa.backend.repository.CanvasImageRepository;
-import lombok.RequiredArgsConstructor;
-import org.springframework.core.ParameterizedTypeReference;
+import com.lekhsewa.backend.services.preprocessing.CanvasPreprocessor;
+import com.lekhsewa.backend.services.preprocessing.PngHeaderValidator;
+import com.lekhsewa.backend.services.preprocessing.StrokeRasterizer;
+import com.lekhsewa.backend.services.recognition.EngineInputPreparer;
+import com.lekhsewa.backend.services.recognition.RecognitionAdmission;
+import com.lekhsewa.backend.services.recognition.RecognitionCache;
+import com.lekhsewa.backend.services.recognition.RecognitionEngine;
+import com.lekhsewa.backend.services.recognition.RecognitionEngineRegistry;
+import com.lekhsewa.backend.services.recognition.RecognitionResult;
+import com.lekhsewa.backend.services.storage.BlobRef;
+import com.lekhsewa.backend.services.storage.BlobStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.reactive.function.client.WebClient;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.Duration;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class CanvasImageService {
     private final CanvasImageRepository canvasImageRepository;
-    private final WebClient djangoClient;
+    private final JdbcTemplate jdbc;
+    private final BlobStore blobStore;
+    private final CanvasPreprocessor canvasPreprocessor;
+    private final PngHeaderValidator pngHeaderValidator;
+    private final StrokeRasterizer strokeRasterizer;
+    private final RecognitionEngineRegistry recognitionEngines;
+    private final EngineInputPreparer engineInputPreparer;
+    private final RecognitionCache recognitionCache;
+    private final RecognitionAdmission recognitionAdmission;
+    private final Timer blobPersistTimer;
+    private final Timer metadataPersistTimer;
+    private final double logSampleRate;
+
+    public CanvasImageService(
+            CanvasImageRepository canvasImageRepository,
+            JdbcTemplate jdbc,
+            BlobStore blobStore,
+            CanvasPreprocessor canvasPreprocessor,
+            PngHeaderValidator pngHeaderValidator,
+            StrokeRasterizer strokeRasterizer,
+            RecognitionEngineRegistry recognitionEngines,
+            EngineInputPreparer engineInputPreparer,
+            RecognitionCache recognitionCache,
+            RecognitionAdmission recognitionAdmission,
+            MeterRegistry meterRegistry,
+            @Value("${logging.sample-rate.recognition:0.1}") double logSampleRate) {
+        this.canvasImageRepository = canvasImageRepository;
+        this.jdbc = jdbc;
+        this.blobStore = blobStore;
+        this.canvasPreprocessor = canvasPreprocessor;
+        this.pngHeaderValidator = pngHeaderValidator;
+        this.strokeRasterizer = strokeRasterizer;
+        this.recognitionEngines = recognitionEngines;
+        this.engineInputPreparer = engineInputPreparer;
+        this.recognitionCache = recognitionCache;
+        this.recognitionAdmission = recognitionAdmission;
+        this.blobPersistTimer = persistTimer(meterRegistry, "blob");
+        this.metadataPersistTimer = persistTimer(meterRegistry, "metadata");
+        this.logSampleRate = logSampleRate;
+    }
 
     public String saveImageWaitAndReturnResponse (MultipartFile file) throws Exception {
-        if (file.isEmpty()) {
-            return "Image is empty";
-        }
+        validateUpload(file);
 
-        byte[] bytes = file.getBytes();
-        if (!"image/png".equalsIgnoreCase(file.getContentType()))
-            throw new IllegalArgumentException("Only PNG allowed");
+        return saveImage(storeUpload(file), MediaType.IMAGE_PNG_VALUE).getFileName();
+    }
 
-        String uniqueFileName = uniqueName();
+    // Cheap header-only check, run before any quota, DB or engine work.
+    public void validateUpload(MultipartFile file) throws IOException {
+        pngHeaderValidator.validate(file);
+    }
 
-        CanvasImage canvasImage = new CanvasImage();
-        canvasImage.setFileName(uniqueFileName);
-        canvasImage.setImageData(bytes);
-        canvasImage.setContentType(file.getContentType());
+    // Decodes the multipart part as a stream and stores only the cropped grayscale canvas.
+    public BlobRef storeUpload(MultipartFile file) throws IOException {
+        return putBlob(normalizeCanvas(file));
+    }
 
-        canvasImageRepository.saveAndFlush(canvasImage);
+    // Same as storeUpload, returning the normalized PNG too. Expects validateUpload to have run.
+    public StoredCanvas storeCanvas(MultipartFile file) throws IOException {
+        byte[] normalized = normalizeCanvas(file);
+        return new StoredCanvas(putBlob(normalized), normalized);
+    }
 
-        return uniqueFileName;
+    // Same as storeUpload for bytes already in memory (e.g. zip entries); returns the normalized PNG too.
+    public StoredCanvas storeCanvas(byte[] bytes) throws IOException {
+        byte[] normalized = normalizeCanvas(bytes);
+        return new StoredCanvas(putBlob(normalized), normalized);
     }
 
-    public boolean getImageByte (Long id)  throws Exception {
-        CanvasImage canvasImage = canvasImageRepository.findById(id).orElseThrow(() -> new Exception("Image not found"));
+    // The cropped grayscale PNG storeUpload would keep, decoded from the part's stream without
+    // buffering the raw upload. Expects validateUpload to have run.
+    public byte[] normalizeCanvas(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return canvasPreprocessor.preprocess(in, 0);
+        }
+    }
 
-        Path path = Paths.get("output/" + canvasImage.getFileName() + ".png");
-        Files.createDirectories(path.getParent());
-        Files.write(path, canvasImage.getImageData());
+    // The cropped grayscale PNG storeCanvas would keep, without storing it yet.
+    public byte[] normalizeCanvas(byte[] bytes) throws IOException {
+        pngHeaderValidator.validate(bytes);
+        return canvasPreprocessor.preprocess(bytes, 0);
+    }
 
-        return true;
+    public BlobRef storeNormalized(byte[] normalized) throws IOException {
+        return putBlob(normalized);
     }
 
-    public Map<String, String> sendFileForTranscribe(String filename) throws Exception {
+    public void validateStrokes(byte[] strokes) {
+        strokeRasterizer.decode(strokes);
+    }
 
-        CanvasImage canvasImage = canvasImageRepository.findByFileName(filename).orElseThrow(() -> new Exception("Image not found"));
+    // Stroke uploads are stored in their vector form and rasterized per engine at recognition time.
+    public CanvasImage saveStrokes(byte[] strokes) throws IOException {
+        strokeRasterizer.decode(strokes);
+        return saveImage(putBlob(strokes), StrokeRasterizer.CONTENT_TYPE);
+    }
 
+    // One batched statement for the whole set; hashes that already have a row are skipped.
+    public void saveImages(Collection<BlobRef> blobs, String contentType) {
+        List<BlobRef> rows = List.copyOf(blobs);
+        metadataPersistTimer.record(() -> jdbc.batchUpdate("""
+                INSERT INTO canvas_image (file_name, content_type, content_hash, size_bytes)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (content_hash) WHERE content_hash IS NOT NULL DO NOTHING
+                """, rows, rows.size(), (ps, blob) -> {
+            ps.setString(1, uniqueName());
+            ps.setString(2, contentType);
+            ps.setString(3, blob.hash());
+            ps.setLong(4, blob.size());
+        }));
+    }
 
-        if (canvasImage.getImageData() == null || canvasImage.getImageData().length == 0) {
-            throw new IllegalArgumentException("File bytes are empty");
+    public CanvasImage saveImage(byte[] bytes, String contentType) throws IOException {
+        pngHeaderValidator.validate(bytes);
+        return saveImage(putBlob(canvasPreprocessor.preprocess(bytes, 0)), contentType);
+    }
+
+    public CanvasImage saveImage(BlobRef blob, String contentType) {
+        Optional<CanvasImage> existing = canvasImageRepository.findByContentHash(blob.hash());
+        if (existing.isPresent()) {
+            return existing.get();
         }
 
-        byte[] imageBytes = canvasImage.getImageData();
-        String mimeType = canvasImage.getContentType();
+        CanvasImage canvasImage = new CanvasImage();
+        canvasImage.setFileName(uniqueName());
+        canvasImage.setContentType(contentType);
+        canvasImage.setContentHash(blob.hash());
+        canvasImage.setSizeBytes(blob.size());
+
+        try {
+            return metadataPersistTimer.record(() -> canvasImageRepository.saveAndFlush(canvasImage));
+        } catch (DataIntegrityViolationException e) {
+            // Lost a race with an identical upload, reuse the row that won.
+            return canvasImageRepository.findByContentHash(blob.hash()).orElseThrow(() -> e);
+        }
+    }
 
-//        System.out.println("mimetype: " + mimeType);
-//        System.out.println("imageBytes: " + Arrays.toString(imageBytes));
+    public byte[] loadImageBytes(CanvasImage canvasImage) throws IOException {
+        if (canvasImage.getContentHash() != null && blobStore.exists(canvasImage.getContentHash())) {
+            return blobStore.read(canvasImage.getContentHash());
+        }
 
-//        Path path = Paths.get("debug_canvas.jpeg");
-//        Files.write(path, imageBytes);
+        byte[] legacy = canvasImageRepository.findLegacyImageData(canvasImage.getId());
+        if (legacy == null || legacy.length == 0) {
+            if (canvasImage.getContentHash() != null) {
+                // The blob exists somewhere, just not in this instance's store; not the caller's fault.
+                throw new IllegalStateException("Blob " + canvasImage.getContentHash() + " is not available on this instance");
+            }
+            throw new IllegalArgumentException("File bytes are empty");
+        }
+        return legacy;
+    }
 
-        Part imagePart = Part.fromBytes(imageBytes, mimeType);
-        Part textPart = Part.fromText("Can you read the character in the text it is nepali handwriting. Just give the answer not anything more. If u cannot read it just say Not Recognized.Try Again.");
+    public boolean getImageByte (Long id)  throws Exception {
+        CanvasImage canvasImage = canvasImageRepository.findById(id).orElseThrow(() -> new Exception("Image not found"));
 
-        Client client = new Client();
+        Path path = Paths.get("output/" + canvasImage.getFileName() + ".png");
+        Files.createDirectories(path.getParent());
+        byte[] bytes = loadImageBytes(canvasImage);
+        Files.write(path, StrokeRasterizer.CONTENT_TYPE.equals(canvasImage.getContentType())
+                ? strokeRasterizer.rasterize(bytes, 0)
+                : bytes);
 
-        Content multimodalContent = Content.fromParts(textPart, imagePart);
-        GenerateContentResponse response = client.models.generateContent(
-                "gemini-2.5-flash",
-                multimodalContent,
-                null
-        );
+        return true;
+    }
 
-        System.out.println(response.text());
-        return Map.of("word", Objects.requireNonNull(response.text()));
+    public Map<String, String> sendFileForTranscribe(String filename) throws Exception {
 
-        //        Map<String, String> payload = Map.of("image", base64Image);
-//
-//        return djangoClient.post()
-//                .uri("http://127.0.0.1:5000/recognize")
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .accept(MediaType.APPLICATION_JSON)
-//                .bodyValue(payload)
-//                .retrieve()
-//                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-//                .block(Duration.ofSeconds(30));
-    }
+        CanvasImage canvasImage = canvasImageRepository.findByFileName(filename).orElseThrow(() -> new Exception("Image not found"));
 
+        byte[] imageBytes = loadImageBytes(canvasImage);
+        String contentHash = canvasImage.getContentHash() != null
+                ? canvasImage.getContentHash()
+                : sha256Hex(imageBytes);
 
-//    private static String sha256Hex(String text) {
-//        try {
-//            var md = MessageDigest.getInstance("SHA-256");
-//            byte[] dig = md.digest(text.getBytes());
-//            StringBuilder sb = new StringBuilder(dig.length * 2);
-//            for (byte b : dig) sb.append(String.format("%02x", b));
-//            return sb.toString();
-//        } catch (Exception e) {
-//            throw new IllegalStateException("Hashing failed", e);
-//        }
-//    }
+        RecognitionResult result = recognize(imageBytes, canvasImage.getContentType(), contentHash);
 
+        return Map.of("word", result.word());
+    }
 
-    public Map<String, Object> sendFileForTranscribes(String filename) throws Exception {
+    public RecognitionResult recognize(byte[] imageBytes, String contentType, String contentHash) throws Exception {
+        RecognitionEngine engine = recognitionEngines.active();
+        long start = System.nanoTime();
+        RecognitionResult result = recognitionCache.get(engine.name(), contentHash, () -> recognitionAdmission.call(engine.name(), () -> engineInputPreparer.recognize(engine, imageBytes, contentType)));
+
+        if (ThreadLocalRandom.current().nextDouble() < logSampleRate) {
+            log.atInfo()
+                    .addKeyValue("engine", result.engine())
+                    .addKeyValue("reason", result.reason())
+                    .addKeyValue("contentHash", contentHash)
+                    .addKeyValue("confidence", result.confidence())
+                    .addKeyValue("elapsedMs", (System.nanoTime() - start) / 1_000_000)
+                    .log("canvas recognized");
+        }
+        return result;
+    }
 
-        CanvasImage canvasImage = canvasImageRepository.findByFileName(filename).orElseThrow(() -> new Exception("Image not found"));
+    private BlobRef putBlob(byte[] bytes) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return blobStore.put(bytes);
+        } finally {
+            blobPersistTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
 
+    private static Timer persistTimer(MeterRegistry meterRegistry, String step) {
+        return Timer.builder("upload.persist")
+                .tag("step", step)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
-        if (canvasImage.getImageData() == null || canvasImage.getImageData().length == 0) {
-            throw new IllegalArgumentException("File bytes are empty");
+    public static String sha256Hex(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Hashing failed", e);
         }
+    }
 
-        String base64Image = Arrays.toString(canvasImage.getImageData());
-        Map<String, String> payload = Map.of("image", base64Image);
-
-        return djangoClient.post()
-                .uri("http://127.0.0.1:5000/recognize")
-                .contentType(MediaType.APPLICATION_JSON)
-                .accept(MediaType.APPLICATION_JSON)
-                .bodyValue(payload)
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                .block(Duration.ofSeconds(30));
-    }
-
-
-//    private static String sha256Hex(String text) {
-//        try {
-//            var md = MessageDigest.getInstance("SHA-256");
-//            byte[] dig = md.digest(text.getBytes());
-//            StringBuilder sb = new StringBuilder(dig.length * 2);
-//            for (byte b : dig) sb.append(String.format("%02x", b));
-//            return sb.toString();
-//        } catch (Exception e) {
-//            throw new IllegalStateException("Hashing failed", e);
-//        }
-//    }
+    public record StoredCanvas(BlobRef blob, byte[] bytes) {}
 
     private static String uniqueName() {
         return UUID.randomUUID().toString();
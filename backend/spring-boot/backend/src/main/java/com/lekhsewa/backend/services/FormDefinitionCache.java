@@ -0,0 +1,98 @@
+package com.lekhsewa.backend.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lekhsewa.backend.services.search.FormsChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+// Form definitions are nearly static, so each one is serialized once and served as cached bytes.
+// Dropped on every FormsChangedEvent: local JPA writes, or changes FormService.checkForChanges notices.
+@Service
+public class FormDefinitionCache {
+
+    private final FormService formService;
+    private final ObjectMapper objectMapper;
+    private final int gzipMinBytes;
+    private final AtomicLong version = new AtomicLong();
+    private final Cache<Long, CachedForm> cache;
+
+    public FormDefinitionCache(
+            FormService formService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${forms.cache.max-size:500}") long maxSize,
+            @Value("${forms.cache.gzip-min-bytes:1024}") int gzipMinBytes) {
+        this.formService = formService;
+        this.objectMapper = objectMapper;
+        this.gzipMinBytes = gzipMinBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "forms.definitions");
+    }
+
+    public CachedForm get(Long id) {
+        long current = version.get();
+        CachedForm cached = cache.getIfPresent(id);
+        if (cached != null && cached.version() == current) {
+            return cached;
+        }
+        // A load racing with an invalidation carries the older version and is replaced on the next read.
+        CachedForm loaded = load(id, current);
+        cache.put(id, loaded);
+        return loaded;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFormsChanged(FormsChangedEvent event) {
+        version.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private CachedForm load(Long id, long version) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(formService.getForm(id));
+            byte[] gzip = json.length >= gzipMinBytes ? gzip(json) : null;
+            return new CachedForm(json, gzip, etag(json), version);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize form " + id, e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 32);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String etag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Hashing failed", e);
+        }
+    }
+
+    public record CachedForm(byte[] json, byte[] gzip, String etag, long version) {}
+}
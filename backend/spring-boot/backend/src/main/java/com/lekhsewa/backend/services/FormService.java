@@ -4,36 +4,110 @@ import com.lekhsewa.backend.DTO.*;
 import com.lekhsewa.backend.model.FieldOption;
 import com.lekhsewa.backend.model.Form;
 import com.lekhsewa.backend.model.FormField;
+import com.lekhsewa.backend.repository.FormFieldRepository;
 import com.lekhsewa.backend.repository.FormRepository;
+import com.lekhsewa.backend.services.search.FormSearchIndex;
+import com.lekhsewa.backend.services.search.FormsChangedEvent;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class FormService {
   private final FormRepository repo;
+  private final FormFieldRepository fieldRepo;
+  private final ApplicationEventPublisher publisher;
+  private final AtomicReference<FormSearchIndex> index = new AtomicReference<>(FormSearchIndex.EMPTY);
+  private volatile String fingerprint;
 
   public Page<FormSummary> search(String rawQ, int page, int size) {
     String q = safe(rawQ);
-    Pageable pageable = PageRequest.of(Math.max(page, 0), clamp(size, 1, 100), Sort.by("name").ascending());
-    Page<Form> res = repo.searchByNameContains(q, pageable);
-    return res.map(f -> new FormSummary(f.getId(), f.getName(), f.getDescription()));
+    Pageable pageable = PageRequest.of(Math.max(page, 0), clamp(size, 1, 100));
+    List<FormSearchIndex.Hit> hits = index.get().search(q);
+    int from = (int) Math.min(pageable.getOffset(), hits.size());
+    int to = Math.min(from + pageable.getPageSize(), hits.size());
+    List<FormSummary> items = hits.subList(from, to).stream().map(FormSearchIndex.Hit::form).toList();
+    return new PageImpl<>(items, pageable, hits.size());
   }
 
-  public Page<FormSummary> suggest(String rawQ, int limit) {
+  // Keyset pagination over (score, name, id): no count, and deep pages cost the same as the first.
+  public CursorPage<FormSummary> searchAfter(String rawQ, String cursor, int size) {
     String q = safe(rawQ);
-    Pageable pageable = PageRequest.of(0, clamp(limit, 1, 20), Sort.by("name").ascending());
-    Page<Form> res = repo.suggestByNamePrefix(q, pageable);
-    return res.map(f -> new FormSummary(f.getId(), f.getName(), f.getDescription()));
+    int limit = clamp(size, 1, 100);
+    List<FormSearchIndex.Hit> hits = index.get().search(q);
+
+    int from = 0;
+    if (cursor != null && !cursor.isBlank()) {
+      String[] parts = Cursors.decode(cursor, 3);
+      FormSearchIndex.Hit after;
+      try {
+        after = new FormSearchIndex.Hit(new FormSummary(Long.parseLong(parts[1]), null, null), Integer.parseInt(parts[0]), parts[2]);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid cursor", e);
+      }
+      int pos = Collections.binarySearch(hits, after, FormSearchIndex.Hit.ORDER);
+      from = pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    int to = Math.min(from + limit, hits.size());
+    List<FormSummary> items = hits.subList(from, to).stream().map(FormSearchIndex.Hit::form).toList();
+    String next = null;
+    if (to < hits.size()) {
+      FormSearchIndex.Hit last = hits.get(to - 1);
+      next = Cursors.encode(last.score(), last.form().id(), last.key());
+    }
+    return CursorPage.of(items, next);
+  }
+
+  public List<FormSummary> suggest(String rawQ, int limit) {
+    return index.get().prefix(safe(rawQ), clamp(limit, 1, 20));
+  }
+
+  // The catalogue is small and rarely changes, so search and suggest never touch the connection pool.
+  @EventListener(ApplicationReadyEvent.class)
+  public void refreshIndex() {
+    // Read first: a change landing during the rebuild is caught by the next check.
+    fingerprint = repo.catalogueFingerprint();
+    FormSearchIndex rebuilt = FormSearchIndex.build(repo.findAllSummaries());
+    index.set(rebuilt);
+    log.debug("Form search index rebuilt with {} forms", rebuilt.size());
+  }
+
+  // Forms written by SQL, a migration or another instance never pass through FormChangeListener, so
+  // the catalogue is polled and a change is announced like a local one, rebuilding this index and
+  // invalidating the cached definitions.
+  @Scheduled(fixedDelayString = "${forms.index.refresh-ms:300000}", initialDelayString = "${forms.index.refresh-ms:300000}")
+  public void checkForChanges() {
+    if (!Objects.equals(repo.catalogueFingerprint(), fingerprint)) {
+      publisher.publishEvent(new FormsChangedEvent());
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onFormsChanged(FormsChangedEvent event) {
+    refreshIndex();
   }
 
+  @Transactional(readOnly = true)
   public FormDataCombinedDTO getForm(Long id){
       Form f = repo.findGraphById(id)
               .orElseThrow(() -> new IllegalArgumentException("Form not found: " + id));
+      fieldRepo.fetchOptionsByFormId(id);
 
       FormDTO formDTO = new FormDTO(f.getId(), f.getName(), f.getDescription());
       var fieldComparator = Comparator.comparingLong(FormField::getId);
@@ -0,0 +1,337 @@
+package com.lekhsewa.backend.services;
+
+import com.lekhsewa.backend.model.CanvasImage;
+import com.lekhsewa.backend.services.preprocessing.StrokeRasterizer;
+import com.lekhsewa.backend.services.recognition.EngineInputPreparer;
+import com.lekhsewa.backend.services.recognition.RecognitionEngine;
+import com.lekhsewa.backend.services.recognition.RecognitionEngineRegistry;
+import com.lekhsewa.backend.services.recognition.RecognitionRejectedException;
+import com.lekhsewa.backend.services.recognition.RecognitionResult;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Server side of live recognition: the client streams pen events for one character, the server keeps
+// the strokes, and after a short pause in drawing pushes provisional top-k guesses from a cheap local
+// engine. Provisional guesses are not charged, so they only run on an in-process engine and on their
+// own small executor; when that is full a guess is skipped. A pause after pen-up (or an explicit commit) runs the normal charged recognition on the
+// drawing and stores it in stroke form, exactly like /api/sendcanvasstrokes.
+@Slf4j
+@Service
+public class LiveRecognitionService {
+
+    private final CanvasImageService canvasImageService;
+    private final StrokeRasterizer strokeRasterizer;
+    private final UserServices userServices;
+    private final EngineInputPreparer inputPreparer;
+    private final ThreadPoolTaskExecutor recognitionExecutor;
+    private final Executor provisionalExecutor;
+    private final ScheduledExecutorService timers;
+    private final RecognitionEngine provisionalEngine;
+    private final long debounceMillis;
+    private final long commitDelayMillis;
+    private final int maxPoints;
+
+    public LiveRecognitionService(
+            CanvasImageService canvasImageService,
+            StrokeRasterizer strokeRasterizer,
+            UserServices userServices,
+            RecognitionEngineRegistry engines,
+            EngineInputPreparer inputPreparer,
+            @Qualifier("recognitionExecutor") ThreadPoolTaskExecutor recognitionExecutor,
+            @Qualifier("liveProvisionalExecutor") Executor provisionalExecutor,
+            @Value("${recognition.live.provisional-engine:onnx}") String provisionalEngine,
+            @Value("${recognition.live.debounce-ms:120}") long debounceMillis,
+            @Value("${recognition.live.commit-delay-ms:700}") long commitDelayMillis,
+            @Value("${upload.strokes.max-points:20000}") int maxPoints) {
+        this.canvasImageService = canvasImageService;
+        this.strokeRasterizer = strokeRasterizer;
+        this.userServices = userServices;
+        this.inputPreparer = inputPreparer;
+        this.recognitionExecutor = recognitionExecutor;
+        this.provisionalExecutor = provisionalExecutor;
+        this.provisionalEngine = engines.names().contains(provisionalEngine) && engines.get(provisionalEngine).inProcess()
+                ? engines.get(provisionalEngine)
+                : null;
+        if (this.provisionalEngine == null) {
+            log.info("Provisional engine {} is not an enabled in-process engine, live recognition sends no provisional guesses", provisionalEngine);
+        }
+        // Every pen event reschedules the debounce timer, so cancelled timers are dropped right away.
+        ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform().name("live-recognition-timer").daemon().factory());
+        timers.setRemoveOnCancelPolicy(true);
+        this.timers = timers;
+        this.debounceMillis = debounceMillis;
+        this.commitDelayMillis = commitDelayMillis;
+        this.maxPoints = maxPoints;
+    }
+
+    public Session open(String sub, int width, int height, int lineWidth, Consumer<Map<String, Object>> send) {
+        if (sub == null || sub.isBlank()) {
+            throw new IllegalArgumentException("sub is required");
+        }
+        strokeRasterizer.validateCanvas(width, height, lineWidth);
+        return new Session(sub, width, height, lineWidth, send);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timers.shutdownNow();
+    }
+
+    // One drawing in progress. Pen events arrive on the socket thread, timers and recognition run
+    // elsewhere, so all state is guarded by the session's monitor.
+    public final class Session {
+
+        private final String sub;
+        private final int width;
+        private final int height;
+        private final int lineWidth;
+        private final Consumer<Map<String, Object>> send;
+
+        private final List<int[]> strokes = new ArrayList<>();
+        private int[] current;
+        private int currentLength;
+        private int points;
+        private long version;
+        private long provisionalVersion;
+        private boolean provisionalRunning;
+        private boolean committing;
+        private ScheduledFuture<?> provisionalTimer;
+        private ScheduledFuture<?> commitTimer;
+
+        private Session(String sub, int width, int height, int lineWidth, Consumer<Map<String, Object>> send) {
+            this.sub = sub;
+            this.width = width;
+            this.height = height;
+            this.lineWidth = lineWidth;
+            this.send = send;
+        }
+
+        public synchronized void penDown(int x, int y, int t) {
+            cancel(commitTimer);
+            finishStroke();
+            current = new int[48];
+            currentLength = 0;
+            add(x, y, t);
+            debounce();
+        }
+
+        // xyt holds x, y, t triples.
+        public synchronized void move(int[] xyt) {
+            if (current == null) {
+                throw new IllegalArgumentException("move before down");
+            }
+            for (int i = 0; i + 2 < xyt.length; i += 3) {
+                add(xyt[i], xyt[i + 1], xyt[i + 2]);
+            }
+            debounce();
+        }
+
+        public synchronized void penUp() {
+            finishStroke();
+            cancel(commitTimer);
+            commitTimer = timers.schedule(this::commit, commitDelayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        public synchronized void clear() {
+            cancel(commitTimer);
+            cancel(provisionalTimer);
+            reset();
+        }
+
+        public void close() {
+            clear();
+        }
+
+        public void commit() {
+            byte[] drawing;
+            synchronized (this) {
+                cancel(commitTimer);
+                cancel(provisionalTimer);
+                finishStroke();
+                if (strokes.isEmpty() || committing) {
+                    return;
+                }
+                drawing = snapshot();
+                committing = true;
+                reset();
+            }
+            execute(() -> {
+                try {
+                    send.accept(recognizeCharged(drawing));
+                } finally {
+                    synchronized (this) {
+                        committing = false;
+                    }
+                }
+            });
+        }
+
+        private void add(int x, int y, int t) {
+            if (x < 0 || y < 0 || x > width || y > height) {
+                throw new IllegalArgumentException("Point outside the canvas");
+            }
+            if (++points > maxPoints) {
+                throw new IllegalArgumentException("Drawing has more than " + maxPoints + " points");
+            }
+            if (currentLength + 3 > current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[currentLength++] = x;
+            current[currentLength++] = y;
+            current[currentLength++] = t;
+            version++;
+        }
+
+        // Restarted on every batch of points, so a guess is only made once drawing pauses.
+        private void debounce() {
+            if (provisionalEngine == null) {
+                return;
+            }
+            cancel(provisionalTimer);
+            provisionalTimer = timers.schedule(this::provisional, debounceMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void finishStroke() {
+            if (current != null && currentLength > 0) {
+                strokes.add(Arrays.copyOf(current, currentLength));
+            }
+            current = null;
+            currentLength = 0;
+        }
+
+        private void reset() {
+            strokes.clear();
+            current = null;
+            currentLength = 0;
+            points = 0;
+            version++;
+        }
+
+        private byte[] snapshot() {
+            List<int[]> all = new ArrayList<>(strokes);
+            if (current != null && currentLength > 0) {
+                all.add(Arrays.copyOf(current, currentLength));
+            }
+            return StrokeRasterizer.encode(new StrokeRasterizer.Drawing(width, height, lineWidth, all));
+        }
+
+        // At most one provisional recognition per session at a time; anything drawn meanwhile is
+        // picked up by a follow-up run, and results for an outdated drawing are dropped.
+        private void provisional() {
+            byte[] drawing;
+            long seenVersion;
+            synchronized (this) {
+                if (provisionalRunning || committing || version == provisionalVersion
+                        || (strokes.isEmpty() && currentLength == 0) || provisionalEngine == null) {
+                    return;
+                }
+                provisionalRunning = true;
+                seenVersion = version;
+                drawing = snapshot();
+            }
+            Runnable run = () -> {
+                Map<String, Object> message = null;
+                try {
+                    RecognitionResult result = inputPreparer.recognize(provisionalEngine, drawing, StrokeRasterizer.CONTENT_TYPE);
+                    message = provisionalMessage(seenVersion, result);
+                } catch (Exception e) {
+                    log.debug("Provisional recognition failed: {}", e.toString());
+                } finally {
+                    synchronized (this) {
+                        provisionalRunning = false;
+                        provisionalVersion = seenVersion;
+                        if (version != seenVersion) {
+                            message = null;
+                            provisionalTimer = timers.schedule(this::provisional, debounceMillis, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                }
+                if (message != null) {
+                    send.accept(message);
+                }
+            };
+            try {
+                provisionalExecutor.execute(run);
+            } catch (RuntimeException e) {
+                // Only a guess: the client is not told, and the next pen event schedules another.
+                synchronized (this) {
+                    provisionalRunning = false;
+                }
+            }
+        }
+
+        private Map<String, Object> recognizeCharged(byte[] drawing) {
+            try {
+                if (!userServices.isUserAbleToProcessMoreImage(sub)) {
+                    return Map.of("type", "error", "error", "QUOTA_EXCEEDED");
+                }
+            } catch (RuntimeException e) {
+                return Map.of("type", "error", "error", String.valueOf(e.getMessage()));
+            }
+            try {
+                CanvasImage image = canvasImageService.saveStrokes(drawing);
+                RecognitionResult result = canvasImageService.recognize(drawing, image.getContentType(), image.getContentHash());
+                Map<String, Object> message = new HashMap<>();
+                message.put("type", "committed");
+                message.put("word", result.word());
+                message.put("confidence", result.confidence());
+                message.put("engine", result.engine());
+                return message;
+            } catch (RecognitionRejectedException e) {
+                userServices.refundImageQuota(sub);
+                return Map.of("type", "error", "error", "SERVER_BUSY", "retryAfterSeconds", e.getRetryAfterSeconds());
+            } catch (Exception e) {
+                userServices.refundImageQuota(sub);
+                return Map.of("type", "error", "error", String.valueOf(e.getMessage()));
+            }
+        }
+
+        private void execute(Runnable task) {
+            try {
+                recognitionExecutor.execute(task);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    committing = false;
+                }
+                send.accept(Map.of("type", "error", "error", "SERVER_BUSY"));
+            }
+        }
+    }
+
+    private static Map<String, Object> provisionalMessage(long version, RecognitionResult result) {
+        List<Map<String, Object>> candidates = new ArrayList<>();
+        if (result.candidates().isEmpty()) {
+            Map<String, Object> only = new HashMap<>();
+            only.put("character", result.word());
+            only.put("confidence", result.confidence());
+            candidates.add(only);
+        } else {
+            for (RecognitionResult.Candidate c : result.candidates()) {
+                candidates.add(Map.of("character", c.character(), "confidence", c.confidence()));
+            }
+        }
+        return Map.of("type", "provisional", "version", version, "engine", result.engine(), "candidates", candidates);
+    }
+
+    private static void cancel(ScheduledFuture<?> timer) {
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.lekhsewa.backend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+// Write-behind buffer for contact messages. Requests only enqueue; one flusher thread drains the
+// queue and writes a multi-row INSERT when batch-size messages are waiting or flush-ms has passed,
+// so a burst of submissions costs a handful of connections instead of one per POST.
+// Batches that cannot be written (DB down, or shutdown with the DB gone) are spooled to disk as
+// NDJSON. The flusher replays the spool once the app is ready, then again every spool-retry-ms
+// while files remain and straight after any flush succeeds, so an outage drains without a restart.
+// A batch the database rejects is retried row by row, and
+// rows it still refuses on their own are set aside in spool-dir/dead-letter instead of blocking
+// the rest.
+@Slf4j
+@Service
+public class MessageIngestBuffer {
+
+    public record PendingMessage(String fullName, String email, String message, OffsetDateTime createdAt) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<PendingMessage> queue;
+    private final int batchSize;
+    private final long flushMillis;
+    private final long spoolRetryNanos;
+    private final Path spoolDir;
+    private final Path deadLetterDir;
+    private final Thread flusher;
+    private final Counter accepted;
+    private final Counter rejected;
+    private final Counter spooled;
+    private final Counter deadLettered;
+    private final Timer flushTimer;
+    private volatile boolean running = true;
+    // Set when there may be spool files to replay; only the flusher thread replays them.
+    private volatile boolean spoolPending;
+    private long nextReplay = System.nanoTime();
+
+    public MessageIngestBuffer(
+            JdbcTemplate jdbc,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${messages.ingest.capacity:10000}") int capacity,
+            @Value("${messages.ingest.batch-size:200}") int batchSize,
+            @Value("${messages.ingest.flush-ms:500}") long flushMillis,
+            @Value("${messages.ingest.spool-retry-ms:30000}") long spoolRetryMillis,
+            @Value("${messages.ingest.spool-dir:data/message-spool}") String spoolDir) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushMillis = flushMillis;
+        this.spoolRetryNanos = TimeUnit.MILLISECONDS.toNanos(spoolRetryMillis);
+        this.spoolDir = Path.of(spoolDir);
+        this.deadLetterDir = this.spoolDir.resolve("dead-letter");
+
+        this.accepted = meterRegistry.counter("messages.ingest", "outcome", "accepted");
+        this.rejected = meterRegistry.counter("messages.ingest", "outcome", "rejected");
+        this.spooled = meterRegistry.counter("messages.ingest", "outcome", "spooled");
+        this.deadLettered = meterRegistry.counter("messages.ingest", "outcome", "dead-lettered");
+        this.flushTimer = Timer.builder("messages.ingest.flush").register(meterRegistry);
+        meterRegistry.gauge("messages.ingest.queued", queue, BlockingQueue::size);
+
+        this.flusher = Thread.ofPlatform().name("message-flusher").daemon().unstarted(this::run);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayOnStart() {
+        spoolPending = true;
+    }
+
+    // False when the buffer is full; the caller should ask the client to retry.
+    public boolean offer(PendingMessage message) {
+        if (!queue.offer(message)) {
+            rejected.increment();
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingMessage first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                    while (batch.size() < batchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        PendingMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    if (flushOrSpool(batch)) {
+                        // The database is taking writes again; no need to wait for the retry interval.
+                        nextReplay = System.nanoTime();
+                    }
+                }
+                if (spoolPending && System.nanoTime() - nextReplay >= 0) {
+                    nextReplay = System.nanoTime() + spoolRetryNanos;
+                    spoolPending = !replaySpool();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // True when the whole batch reached the database (refused rows included, they are dead-lettered).
+    private boolean flushOrSpool(List<PendingMessage> batch) {
+        List<PendingMessage> pending = write(batch);
+        if (!pending.isEmpty()) {
+            spool(pending);
+            return false;
+        }
+        return true;
+    }
+
+    // Returns the rows that could not be written because the database was unavailable; rows it
+    // rejected are dead-lettered rather than returned.
+    private List<PendingMessage> write(List<PendingMessage> batch) {
+        try {
+            flushTimer.record(() -> insert(batch));
+            return List.of();
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Message flush of {} rows rejected, retrying row by row: {}", batch.size(), e.toString());
+        } catch (RuntimeException e) {
+            log.warn("Message flush of {} rows failed, spooling to disk: {}", batch.size(), e.toString());
+            return batch;
+        }
+
+        List<PendingMessage> refused = new ArrayList<>();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    insert(List.of(batch.get(i)));
+                } catch (DataIntegrityViolationException e) {
+                    refused.add(batch.get(i));
+                } catch (RuntimeException e) {
+                    log.warn("Message flush failed part way, spooling {} rows: {}", batch.size() - i, e.toString());
+                    return List.copyOf(batch.subList(i, batch.size()));
+                }
+            }
+            return List.of();
+        } finally {
+            if (!refused.isEmpty()) {
+                log.warn("{} messages rejected by the database, moved to {}", refused.size(), deadLetterDir);
+                if (writeFile(deadLetterDir, refused)) {
+                    deadLettered.increment(refused.size());
+                }
+            }
+        }
+    }
+
+    private void insert(List<PendingMessage> batch) {
+        StringBuilder sql = new StringBuilder("insert into message (full_name, email, message, created_at) values ");
+        Object[] args = new Object[batch.size() * 4];
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append("(?, ?, ?, ?)");
+            PendingMessage m = batch.get(i);
+            args[i * 4] = m.fullName();
+            args[i * 4 + 1] = m.email();
+            args[i * 4 + 2] = m.message();
+            args[i * 4 + 3] = Timestamp.from(m.createdAt().toInstant());
+        }
+        jdbc.update(sql.toString(), args);
+    }
+
+    private boolean spool(List<PendingMessage> batch) {
+        if (writeFile(spoolDir, batch)) {
+            spooled.increment(batch.size());
+            spoolPending = true;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean writeFile(Path dir, List<PendingMessage> batch) {
+        try {
+            Files.createDirectories(dir);
+            Path file = dir.resolve("messages-" + System.currentTimeMillis() + "-" + System.nanoTime() + ".ndjson");
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW)) {
+                for (PendingMessage m : batch) {
+                    out.write(objectMapper.writeValueAsString(m));
+                    out.newLine();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Could not write {} messages to {}, they are lost", batch.size(), dir, e);
+            return false;
+        }
+    }
+
+    // Files are replayed independently: an unreadable file is moved to the dead-letter directory and
+    // bad rows are dead-lettered by write, so only an unavailable database stops the replay.
+    // True once the spool is empty.
+    private boolean replaySpool() {
+        if (!Files.isDirectory(spoolDir)) {
+            return true;
+        }
+        List<Path> files;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spoolDir, "*.ndjson")) {
+            files = StreamSupport.stream(stream.spliterator(), false).sorted().toList();
+        } catch (IOException e) {
+            log.warn("Could not list the message spool, will retry: {}", e.toString());
+            return false;
+        }
+
+        for (Path file : files) {
+            List<PendingMessage> batch = new ArrayList<>();
+            try {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) {
+                        batch.add(objectMapper.readValue(line, PendingMessage.class));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Spool file {} is unreadable, moving it to {}: {}", file.getFileName(), deadLetterDir, e.toString());
+                moveToDeadLetter(file);
+                continue;
+            }
+
+            List<PendingMessage> pending = batch.isEmpty() ? List.of() : write(batch);
+            try {
+                if (!pending.isEmpty()) {
+                    // Keep only the rows that were not written, so the next start does not duplicate the rest.
+                    if (pending.size() < batch.size() && spool(pending)) {
+                        Files.delete(file);
+                    }
+                    log.warn("Message spool replay stopped, will retry in {} ms", TimeUnit.NANOSECONDS.toMillis(spoolRetryNanos));
+                    return false;
+                }
+                Files.delete(file);
+                log.info("Replayed {} spooled messages from {}", batch.size(), file.getFileName());
+            } catch (IOException e) {
+                log.warn("Could not remove replayed spool file {}: {}", file.getFileName(), e.toString());
+            }
+        }
+        return true;
+    }
+
+    private void moveToDeadLetter(Path file) {
+        try {
+            Files.createDirectories(deadLetterDir);
+            Files.move(file, deadLetterDir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Could not move {} to {}", file, deadLetterDir, e);
+        }
+    }
+
+    // Stop the flusher, then write whatever is still queued; spool it if the DB is unavailable.
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.join(flushMillis * 4);
+        List<PendingMessage> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            flushOrSpool(rest.subList(from, Math.min(from + batchSize, rest.size())));
+        }
+    }
+}
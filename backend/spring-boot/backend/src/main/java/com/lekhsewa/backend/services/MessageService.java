@@ -0,0 +1,139 @@
+package com.lekhsewa.backend.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lekhsewa.backend.DTO.CursorPage;
+import com.lekhsewa.backend.model.Message;
+import com.lekhsewa.backend.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class MessageService {
+
+    public enum ExportFormat { JSON_ARRAY, NDJSON }
+
+    private final MessageRepository repo;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate readOnlyTx;
+    private final ObjectMapper objectMapper;
+    private final int exportFetchSize;
+
+    public MessageService(
+            MessageRepository repo,
+            JdbcTemplate jdbc,
+            PlatformTransactionManager txManager,
+            ObjectMapper objectMapper,
+            @Value("${messages.export.fetch-size:500}") int exportFetchSize
+    ) {
+        this.repo = repo;
+        this.jdbc = jdbc;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.exportFetchSize = exportFetchSize;
+    }
+
+    // Newest first. The cursor is the (created_at, id) of the last row handed out.
+    @Transactional(readOnly = true)
+    public CursorPage<Message> page(String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, 100));
+
+        List<Message> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = repo.findNewest(limit + 1);
+        } else {
+            String[] parts = Cursors.decode(cursor, 2);
+            try {
+                OffsetDateTime createdAt = Instant.parse(parts[0]).atOffset(ZoneOffset.UTC);
+                rows = repo.findOlderThan(createdAt, Long.parseLong(parts[1]), limit + 1);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+
+        if (rows.size() <= limit) {
+            return CursorPage.of(rows, null);
+        }
+        List<Message> items = rows.subList(0, limit);
+        Message last = items.get(limit - 1);
+        return CursorPage.of(items, Cursors.encode(last.getCreatedAt().toInstant(), last.getId()));
+    }
+
+    // Streams matching messages straight from a forward-only cursor to the output, oldest first.
+    // The Postgres driver only honours the fetch size with autocommit off, hence the transaction;
+    // rows never become entities, so memory stays flat whatever the size of the inbox.
+    public void export(OffsetDateTime from, OffsetDateTime to, String email, ExportFormat format, OutputStream out) {
+        StringBuilder sql = new StringBuilder("select id, full_name, email, message, created_at from message where true");
+        List<Object> args = new ArrayList<>();
+        if (from != null) {
+            sql.append(" and created_at >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            sql.append(" and created_at < ?");
+            args.add(to);
+        }
+        if (email != null && !email.isBlank()) {
+            sql.append(" and lower(email) = lower(?)");
+            args.add(email.trim());
+        }
+        sql.append(" order by created_at, id");
+
+        PreparedStatementCreator statement = con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(exportFetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        };
+
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (format == ExportFormat.JSON_ARRAY) {
+                json.writeStartArray();
+            } else {
+                json.setRootValueSeparator(null);
+            }
+            readOnlyTx.executeWithoutResult(status -> jdbc.query(statement, rs -> {
+                try {
+                    json.writeStartObject();
+                    json.writeNumberField("id", rs.getLong("id"));
+                    json.writeStringField("fullName", rs.getString("full_name"));
+                    json.writeStringField("email", rs.getString("email"));
+                    json.writeStringField("message", rs.getString("message"));
+                    json.writeStringField("createdAt", rs.getObject("created_at", OffsetDateTime.class).toString());
+                    json.writeEndObject();
+                    if (format == ExportFormat.NDJSON) {
+                        json.writeRaw('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            if (format == ExportFormat.JSON_ARRAY) {
+                json.writeEndArray();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
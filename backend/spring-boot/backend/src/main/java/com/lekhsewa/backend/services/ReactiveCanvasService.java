@@ -0,0 +1,106 @@
+package com.lekhsewa.backend.services;
+
+import com.lekhsewa.backend.services.recognition.EngineInputPreparer;
+import com.lekhsewa.backend.services.recognition.ReactiveRecognitionEngine;
+import com.lekhsewa.backend.services.recognition.RecognitionAdmission;
+import com.lekhsewa.backend.services.recognition.RecognitionCache;
+import com.lekhsewa.backend.services.recognition.RecognitionEngine;
+import com.lekhsewa.backend.services.recognition.RecognitionEngineRegistry;
+import com.lekhsewa.backend.services.recognition.RecognitionResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Upload -> persist -> recognize without holding a thread for the whole request. JPA, blob and image
+// work hop onto the bounded recognitionBlockingScheduler; the engine call itself is non-blocking for
+// engines with a reactive client (the python service over the pooled WebClient), and takes a
+// scheduler thread only for the others. Waiting for an admission permit holds no thread either.
+@Slf4j
+@Service
+public class ReactiveCanvasService {
+
+    private final CanvasImageService canvasImageService;
+    private final UserServices userServices;
+    private final RecognitionEngineRegistry recognitionEngines;
+    private final EngineInputPreparer engineInputPreparer;
+    private final RecognitionCache recognitionCache;
+    private final RecognitionAdmission recognitionAdmission;
+    private final Scheduler blocking;
+
+    public ReactiveCanvasService(
+            CanvasImageService canvasImageService,
+            UserServices userServices,
+            RecognitionEngineRegistry recognitionEngines,
+            EngineInputPreparer engineInputPreparer,
+            RecognitionCache recognitionCache,
+            RecognitionAdmission recognitionAdmission,
+            @Qualifier("recognitionBlockingScheduler") Scheduler blocking) {
+        this.canvasImageService = canvasImageService;
+        this.userServices = userServices;
+        this.recognitionEngines = recognitionEngines;
+        this.engineInputPreparer = engineInputPreparer;
+        this.recognitionCache = recognitionCache;
+        this.recognitionAdmission = recognitionAdmission;
+        this.blocking = blocking;
+    }
+
+    // Empty when the user is out of quota. Any failure after the quota was taken refunds it, and so
+    // does cancellation: the async request timing out or the client going away.
+    public Mono<RecognitionResult> upload(MultipartFile file, String sub) {
+        return offload(() -> {
+                    canvasImageService.validateUpload(file);
+                    return userServices.isUserAbleToProcessMoreImage(sub);
+                })
+                .filter(Boolean::booleanValue)
+                .flatMap(charged -> {
+                    // Set once the charge is settled either way, so it is refunded at most once.
+                    AtomicBoolean settled = new AtomicBoolean();
+                    return offload(() -> {
+                                CanvasImageService.StoredCanvas canvas = canvasImageService.storeCanvas(file);
+                                canvasImageService.saveImage(canvas.blob(), MediaType.IMAGE_PNG_VALUE);
+                                return canvas;
+                            })
+                            .flatMap(canvas -> recognize(canvas.bytes(), MediaType.IMAGE_PNG_VALUE, canvas.blob().hash()))
+                            .doOnSuccess(result -> settled.set(true))
+                            .onErrorResume(e -> refund(sub, settled).then(Mono.<RecognitionResult>error(e)))
+                            .doOnCancel(() -> refund(sub, settled).subscribe(
+                                    null, e -> log.warn("Quota refund for cancelled upload failed: {}", e.toString())));
+                });
+    }
+
+    private Mono<Void> refund(String sub, AtomicBoolean settled) {
+        return offload(() -> {
+            if (settled.compareAndSet(false, true)) {
+                userServices.refundImageQuota(sub);
+            }
+            return true;
+        }).then();
+    }
+
+    // Shares the recognition cache and admission limits with the blocking path in CanvasImageService.
+    public Mono<RecognitionResult> recognize(byte[] imageBytes, String contentType, String contentHash) {
+        RecognitionEngine engine = recognitionEngines.active();
+        // Cancelling one subscriber must not cancel the cached call other requests may be sharing.
+        return Mono.fromFuture(() -> recognitionCache.getAsync(engine.name(), contentHash,
+                () -> recognitionAdmission.callAsync(engine.name(), () -> engineCall(engine, imageBytes, contentType).toFuture())), true);
+    }
+
+    private Mono<RecognitionResult> engineCall(RecognitionEngine engine, byte[] imageBytes, String contentType) {
+        if (engine instanceof ReactiveRecognitionEngine reactive) {
+            return offload(() -> engineInputPreparer.prepare(engine, imageBytes, contentType))
+                    .flatMap(input -> reactive.recognizeReactive(input.bytes(), input.contentType()));
+        }
+        return offload(() -> engineInputPreparer.recognize(engine, imageBytes, contentType));
+    }
+
+    private <T> Mono<T> offload(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(blocking);
+    }
+}
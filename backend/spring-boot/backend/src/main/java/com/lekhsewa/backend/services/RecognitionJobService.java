@@ -0,0 +1,227 @@
+package com.lekhsewa.backend.services;
+
+import com.lekhsewa.backend.DTO.RecognitionJobStatus;
+import com.lekhsewa.backend.model.CanvasImage;
+import com.lekhsewa.backend.model.RecognitionJob;
+import com.lekhsewa.backend.repository.RecognitionJobRepository;
+import com.lekhsewa.backend.services.recognition.RecognitionResult;
+import com.lekhsewa.backend.services.storage.BlobRef;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Durable recognition queue on the recognition_job table. Each instance polls, claims up to its free
+// worker slots with FOR UPDATE SKIP LOCKED and runs them on the recognition executor. A claim is a
+// lease: if the instance dies the job is picked up again once locked_until passes. Failures are
+// retried with exponential backoff until max-attempts, after which the job fails and the quota is refunded.
+// The normalized canvas is stored on the job row, so any instance can run a job, not only the one whose
+// local blob store took the upload.
+@Slf4j
+@Service
+public class RecognitionJobService {
+
+    private final CanvasImageService canvasImageService;
+    private final UserServices userServices;
+    private final RecognitionJobRepository repo;
+    private final ThreadPoolTaskExecutor recognitionExecutor;
+    private final TransactionTemplate tx;
+    private final String workerId;
+    private final int workers;
+    private final int maxAttempts;
+    private final long leaseSeconds;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+    private final long retentionMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, List<Consumer<RecognitionJobStatus>>> watchers = new ConcurrentHashMap<>();
+
+    public RecognitionJobService(
+            CanvasImageService canvasImageService,
+            UserServices userServices,
+            RecognitionJobRepository repo,
+            @Qualifier("recognitionExecutor") ThreadPoolTaskExecutor recognitionExecutor,
+            PlatformTransactionManager txManager,
+            MeterRegistry meterRegistry,
+            @Value("${recognition.jobs.workers:4}") int workers,
+            @Value("${recognition.jobs.max-attempts:5}") int maxAttempts,
+            @Value("${recognition.jobs.lease-seconds:120}") long leaseSeconds,
+            @Value("${recognition.jobs.backoff-base-ms:2000}") long backoffBaseMillis,
+            @Value("${recognition.jobs.backoff-max-ms:300000}") long backoffMaxMillis,
+            @Value("${recognition.jobs.retention-ms:600000}") long retentionMillis) {
+        this.canvasImageService = canvasImageService;
+        this.userServices = userServices;
+        this.repo = repo;
+        this.recognitionExecutor = recognitionExecutor;
+        this.tx = new TransactionTemplate(txManager);
+        this.workerId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.leaseSeconds = leaseSeconds;
+        this.backoffBaseMillis = backoffBaseMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+        this.retentionMillis = retentionMillis;
+
+        meterRegistry.gauge("recognition.jobs.in.flight", inFlight);
+        meterRegistry.gauge("recognition.jobs.queued", repo, r -> r.countByState(RecognitionJob.QUEUED));
+    }
+
+    // Quota for sub must already be reserved; it is refunded if the job finally fails.
+    public RecognitionJob submit(CanvasImageService.StoredCanvas canvas, String contentType, String sub) {
+        OffsetDateTime now = OffsetDateTime.now();
+        RecognitionJob job = new RecognitionJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setAuth0Sub(sub);
+        job.setContentHash(canvas.blob().hash());
+        job.setContentType(contentType);
+        job.setSizeBytes(canvas.blob().size());
+        job.setNextAttemptAt(now);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        return tx.execute(status -> {
+            RecognitionJob saved = repo.saveAndFlush(job);
+            repo.storePayload(saved.getId(), canvas.bytes());
+            return saved;
+        });
+    }
+
+    public Optional<RecognitionJobStatus> find(String id) {
+        return repo.findById(id).map(RecognitionJobService::status);
+    }
+
+    // Calls listener once with the final status, whichever instance ran the job.
+    public void watch(String id, Consumer<RecognitionJobStatus> listener) {
+        watchers.computeIfAbsent(id, k -> new CopyOnWriteArrayList<>()).add(listener);
+        repo.findById(id).filter(RecognitionJob::isFinished).ifPresent(this::notifyWatchers);
+    }
+
+    public void unwatch(String id, Consumer<RecognitionJobStatus> listener) {
+        watchers.computeIfPresent(id, (k, list) -> {
+            list.remove(listener);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${recognition.jobs.poll-ms:500}")
+    public void poll() {
+        if (!watchers.isEmpty()) {
+            repo.findFinished(watchers.keySet()).forEach(this::notifyWatchers);
+        }
+
+        int free = workers - inFlight.get();
+        if (free <= 0) {
+            return;
+        }
+        List<RecognitionJob> claimed = tx.execute(status -> repo.claim(workerId, free, leaseSeconds));
+        for (RecognitionJob job : claimed) {
+            inFlight.incrementAndGet();
+            try {
+                recognitionExecutor.execute(() -> {
+                    try {
+                        run(job);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                inFlight.decrementAndGet();
+                tx.executeWithoutResult(status -> repo.release(job.getId(), workerId));
+            }
+        }
+    }
+
+    private void run(RecognitionJob job) {
+        try {
+            CanvasImage image = canvasImageService.saveImage(new BlobRef(job.getContentHash(), job.getSizeBytes()), job.getContentType());
+            byte[] bytes = repo.findPayload(job.getId());
+            if (bytes == null) {
+                // Queued before payloads were stored on the job.
+                bytes = canvasImageService.loadImageBytes(image);
+            }
+            RecognitionResult result = canvasImageService.recognize(bytes, job.getContentType(), image.getContentHash());
+            Integer updated = tx.execute(status -> repo.complete(job.getId(), workerId, result.word(), result.confidence(), result.engine()));
+            if (updated == null || updated == 0) {
+                // Our lease was taken over; the worker that holds it now reports the outcome.
+                log.warn("Recognition job {} finished after its lease was taken over, dropping result", job.getId());
+                return;
+            }
+            job.setState(RecognitionJob.DONE);
+            job.setWord(result.word());
+        } catch (IllegalArgumentException e) {
+            // Bad input (empty canvas, undecodable image) will not get better on retry.
+            if (!failFinally(job, e.getMessage())) {
+                return;
+            }
+        } catch (Exception e) {
+            if (job.getAttempts() >= maxAttempts) {
+                if (!failFinally(job, e.getMessage())) {
+                    return;
+                }
+            } else {
+                double delaySeconds = backoffMillis(job.getAttempts()) / 1000.0;
+                log.warn("Recognition job {} attempt {} failed, retrying in {}s: {}", job.getId(), job.getAttempts(), delaySeconds, e.toString());
+                tx.executeWithoutResult(status -> repo.retryLater(job.getId(), workerId, String.valueOf(e.getMessage()), delaySeconds));
+                return;
+            }
+        }
+        notifyWatchers(job);
+    }
+
+    // False when the lease was lost: neither the refund nor the notification is ours to send.
+    private boolean failFinally(RecognitionJob job, String error) {
+        Integer updated = tx.execute(status -> repo.fail(job.getId(), workerId, String.valueOf(error)));
+        if (updated == null || updated == 0) {
+            return false;
+        }
+        userServices.refundImageQuota(job.getAuth0Sub());
+        job.setState(RecognitionJob.FAILED);
+        job.setError(error);
+        return true;
+    }
+
+    // Full jitter: uniform in [0, min(max, base * 2^(attempt-1))].
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private void notifyWatchers(RecognitionJob job) {
+        List<Consumer<RecognitionJobStatus>> listeners = watchers.remove(job.getId());
+        if (listeners != null) {
+            RecognitionJobStatus status = status(job);
+            listeners.forEach(listener -> listener.accept(status));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${recognition.jobs.cleanup-interval-ms:60000}")
+    public void evictExpired() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minusNanos(retentionMillis * 1_000_000);
+        tx.executeWithoutResult(status -> repo.deleteFinishedBefore(cutoff));
+    }
+
+    public static RecognitionJobStatus status(RecognitionJob job) {
+        return switch (job.getState()) {
+            case RecognitionJob.DONE -> new RecognitionJobStatus(job.getId(), "DONE", job.getWord(), null);
+            case RecognitionJob.FAILED -> new RecognitionJobStatus(job.getId(), "FAILED", null, job.getError());
+            default -> new RecognitionJobStatus(job.getId(), "PENDING", null, null);
+        };
+    }
+}
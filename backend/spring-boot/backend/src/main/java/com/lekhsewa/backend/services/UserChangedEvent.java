@@ -0,0 +1,4 @@
+package com.lekhsewa.backend.services;
+
+// Published after a user's plan or quota changes; a null sub means every user.
+public record UserChangedEvent(String sub) {}
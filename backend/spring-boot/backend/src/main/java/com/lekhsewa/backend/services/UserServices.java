@@ -1,24 +1,56 @@
 package com.lekhsewa.backend.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.lekhsewa.backend.model.AppUser;
 import com.lekhsewa.backend.repository.AppUserRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Duration;
 import java.util.Optional;
 
 @Service
-@RequiredArgsConstructor
 public class UserServices {
 
     private final AppUserRepository appUserRepository;
+    private final ApplicationEventPublisher events;
+    private final int freeDailyLimit;
+    private final Timer quotaCheckTimer;
+    // Plan and quota per sub. Every write below publishes UserChangedEvent, which evicts after commit;
+    // the TTL bounds staleness from a load racing an eviction or from writes made elsewhere.
+    private final Cache<String, UserSnapshot> snapshots;
+
+    public UserServices(
+            AppUserRepository appUserRepository,
+            ApplicationEventPublisher events,
+            MeterRegistry meterRegistry,
+            @Value("${quota.free-daily-limit:6}") int freeDailyLimit,
+            @Value("${users.cache.max-size:10000}") long cacheMaxSize,
+            @Value("${users.cache.ttl-ms:60000}") long cacheTtlMillis) {
+        this.appUserRepository = appUserRepository;
+        this.events = events;
+        this.freeDailyLimit = freeDailyLimit;
+        this.quotaCheckTimer = Timer.builder("upload.quota.check")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMillis))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots, "users.snapshots");
+    }
 
     public String lookUpUserPlan(String sub){
-        Optional<AppUser> user = appUserRepository.findByAuth0Sub(sub);
-        if (user.isPresent()) {
-            return user.orElseThrow(() -> new RuntimeException("User not found")).getPlan();
-        }
-        return null;
+        return snapshot(sub).map(UserSnapshot::plan).orElse(null);
     }
 
     public String changePlantoPro(String sub) {
@@ -32,37 +64,86 @@ public class UserServices {
         user.setPlan("paid");
 
         appUserRepository.save(user);
+        events.publishEvent(new UserChangedEvent(sub));
 
         return "Plan upgraded to PRO";
     }
 
+    // Single conditional UPDATE so concurrent uploads from one user cannot overshoot the quota.
+    @Transactional
     public Boolean isUserAbleToProcessMoreImage(String sub) {
-        System.out.println(sub);
-        Optional<AppUser> userOpt = appUserRepository.findByAuth0Sub(sub);
-        if (userOpt.isEmpty()) {
+        boolean reserved = quotaCheckTimer.record(() -> appUserRepository.reserveQuota(sub, freeDailyLimit).isPresent());
+        if (reserved) {
+            events.publishEvent(new UserChangedEvent(sub));
+            return true;
+        }
+        if (!appUserRepository.existsByAuth0Sub(sub)) {
             throw new RuntimeException("User not found for sub: " + sub);
         }
+        return false;
+    }
 
-        AppUser user = userOpt.get();
-        if (user.getPlan().equals("paid")) {
+    // Reserves count images in one statement; either all fit in today's quota or none are taken.
+    @Transactional
+    public boolean reserveImageQuota(String sub, int count) {
+        boolean reserved = quotaCheckTimer.record(() -> appUserRepository.reserveQuota(sub, freeDailyLimit, count).isPresent());
+        if (reserved) {
+            events.publishEvent(new UserChangedEvent(sub));
             return true;
         }
-        else if ( user.getPlan().equals("free") && user.getQuota() <= 5) {
-            user.setQuota(user.getQuota() + 1);
-            return true;
+        if (!appUserRepository.existsByAuth0Sub(sub)) {
+            throw new RuntimeException("User not found for sub: " + sub);
         }
-        else {
-            return false;
+        return false;
+    }
+
+    @Transactional
+    public void refundImageQuota(String sub, int count) {
+        if (count > 0 && appUserRepository.refundQuota(sub, count) > 0) {
+            events.publishEvent(new UserChangedEvent(sub));
         }
+    }
 
+    @Transactional
+    public void refundImageQuota(String sub) {
+        if (appUserRepository.refundQuota(sub) > 0) {
+            events.publishEvent(new UserChangedEvent(sub));
+        }
+    }
+
+    @Transactional
+    @Scheduled(cron = "${quota.reset-cron:0 0 0 * * *}", zone = "${quota.reset-zone:Asia/Kathmandu}")
+    public void resetDailyQuotas() {
+        appUserRepository.resetAllQuotas();
+        events.publishEvent(new UserChangedEvent(null));
     }
 
     public Integer lookupquota(String sub) {
-        Optional<AppUser> userOpt = appUserRepository.findByAuth0Sub(sub);
-        if (userOpt.isEmpty()) {
-            throw new RuntimeException("User not found for sub: " + sub);
+        return snapshot(sub)
+                .orElseThrow(() -> new RuntimeException("User not found for sub: " + sub))
+                .quota();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.sub() == null) {
+            snapshots.invalidateAll();
+        } else {
+            snapshots.invalidate(event.sub());
         }
-        AppUser user = userOpt.get();
-        return user.getQuota();
     }
+
+    // Unknown subs are not cached, so a user created after a miss is seen on the next call.
+    private Optional<UserSnapshot> snapshot(String sub) {
+        UserSnapshot cached = snapshots.getIfPresent(sub);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<UserSnapshot> loaded = appUserRepository.findByAuth0Sub(sub)
+                .map(user -> new UserSnapshot(user.getPlan(), user.getQuota()));
+        loaded.ifPresent(snapshot -> snapshots.put(sub, snapshot));
+        return loaded;
+    }
+
+    private record UserSnapshot(String plan, Integer quota) {}
 }
@@ -0,0 +1,93 @@
+package com.lekhsewa.backend.services;
+
+import com.lekhsewa.backend.services.preprocessing.GlyphSegmenter;
+import com.lekhsewa.backend.services.recognition.GlyphJoiner;
+import com.lekhsewa.backend.services.recognition.RecognitionResult;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Recognizes a whole handwritten word from one canvas: segment into glyphs, recognize every glyph
+// in parallel (each through the usual cache and admission path), then join them in logical order.
+// Every glyph is an engine call, so callers segment first and charge quota per glyph.
+@Service
+public class WordRecognitionService {
+
+    private final CanvasImageService canvasImageService;
+    private final GlyphSegmenter glyphSegmenter;
+    private final ForkJoinPool pool;
+
+    public WordRecognitionService(
+            CanvasImageService canvasImageService,
+            GlyphSegmenter glyphSegmenter,
+            @Value("${recognition.word.parallelism:4}") int parallelism) {
+        this.canvasImageService = canvasImageService;
+        this.glyphSegmenter = glyphSegmenter;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    // unrecognized holds the positions of glyphs no engine could read; when it is not empty the
+    // result carries the engine's "not recognized" answer instead of a partial word.
+    public record WordResult(RecognitionResult result, int glyphs, List<Integer> unrecognized) {}
+
+    // canvas must be the normalized PNG produced by CanvasImageService.normalizeCanvas.
+    public List<byte[]> segment(byte[] canvas) throws IOException {
+        return glyphSegmenter.split(canvas);
+    }
+
+    // glyphs must be segment(canvas).
+    public WordResult recognize(byte[] canvas, String contentHash, List<byte[]> glyphs) throws Exception {
+        if (glyphs.size() == 1) {
+            RecognitionResult result = canvasImageService.recognize(canvas, MediaType.IMAGE_PNG_VALUE, contentHash);
+            return new WordResult(result, 1, result.unrecognized() ? List.of(0) : List.of());
+        }
+
+        List<RecognitionResult> results;
+        try {
+            results = pool.submit(() -> glyphs.parallelStream().map(this::recognizeGlyph).toList()).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+
+        List<Integer> unrecognized = IntStream.range(0, results.size())
+                .filter(i -> results.get(i).unrecognized())
+                .boxed()
+                .toList();
+        if (!unrecognized.isEmpty()) {
+            RecognitionResult first = results.get(unrecognized.get(0));
+            return new WordResult(new RecognitionResult(first.word(), null, first.engine()), glyphs.size(), unrecognized);
+        }
+
+        String word = GlyphJoiner.join(results.stream().map(RecognitionResult::word).toList());
+        // A word is only as certain as its least certain glyph.
+        Double confidence = results.stream()
+                .map(RecognitionResult::confidence)
+                .filter(Objects::nonNull)
+                .min(Double::compare)
+                .orElse(null);
+        return new WordResult(new RecognitionResult(word, confidence, results.get(0).engine()), glyphs.size(), List.of());
+    }
+
+    private RecognitionResult recognizeGlyph(byte[] glyph) {
+        try {
+            return canvasImageService.recognize(glyph, MediaType.IMAGE_PNG_VALUE, CanvasImageService.sha256Hex(glyph));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
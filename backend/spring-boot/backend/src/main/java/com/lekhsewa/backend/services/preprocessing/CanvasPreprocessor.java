@@ -0,0 +1,280 @@
+package com.lekhsewa.backend.services.preprocessing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Crops a canvas to the ink, converts it to 8-bit grayscale and optionally downscales it to a square
+// target size. Pixel buffers, including the image the source is decoded into, come from a small bounded
+// pool, so steady-state requests only allocate the encoded output and a few small headers. Buffers grown
+// for an unusually large canvas are dropped on return instead of being kept for the life of the pool.
+@Component
+public class CanvasPreprocessor {
+
+    private static final ColorModel GRAY = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+            new int[]{8}, false, true, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+    private final int inkThreshold;
+    private final int paddingPercent;
+    private final Timer decodeTimer;
+    private final Timer cropTimer;
+    private final Timer resizeTimer;
+    private final Timer encodeTimer;
+
+    private final BlockingQueue<Buffers> pool;
+    private final int maxRetainedPixels;
+
+    public CanvasPreprocessor(
+            MeterRegistry meterRegistry,
+            @Value("${preprocessing.ink-threshold:200}") int inkThreshold,
+            @Value("${preprocessing.padding-percent:10}") int paddingPercent,
+            @Value("${preprocessing.buffers.pool-size:8}") int poolSize,
+            @Value("${preprocessing.buffers.max-retained-pixels:1000000}") int maxRetainedPixels) {
+        this.inkThreshold = inkThreshold;
+        this.paddingPercent = paddingPercent;
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        this.maxRetainedPixels = maxRetainedPixels;
+        this.decodeTimer = stepTimer(meterRegistry, "decode");
+        this.cropTimer = stepTimer(meterRegistry, "crop");
+        this.resizeTimer = stepTimer(meterRegistry, "resize");
+        this.encodeTimer = stepTimer(meterRegistry, "encode");
+    }
+
+    public byte[] preprocess(byte[] imageBytes, int targetSize) throws IOException {
+        return preprocess(new ByteArrayInputStream(imageBytes), targetSize);
+    }
+
+    // targetSize <= 0 keeps the cropped resolution.
+    public byte[] preprocess(InputStream in, int targetSize) throws IOException {
+        Buffers buf = acquire();
+        try {
+            long start = System.nanoTime();
+            Decoded source = decode(in, buf);
+            long decoded = record(decodeTimer, start);
+
+            Gray cropped = cropToInk(source, buf);
+            long croppedAt = record(cropTimer, decoded);
+
+            Gray output = targetSize > 0 ? downscale(cropped, targetSize, buf) : cropped;
+            long resized = record(resizeTimer, croppedAt);
+
+            byte[] png = encode(output);
+            record(encodeTimer, resized);
+            return png;
+        } finally {
+            release(buf);
+        }
+    }
+
+    private Buffers acquire() {
+        Buffers buf = pool.poll();
+        return buf != null ? buf : new Buffers();
+    }
+
+    // Returned buffers beyond the pool size are left to the GC.
+    private void release(Buffers buf) {
+        buf.trim(maxRetainedPixels);
+        pool.offer(buf);
+    }
+
+    // Decodes into the pooled image when it has the layout the reader would pick and is large enough;
+    // the reader only writes the top-left width x height, which is all that is read back.
+    private static Decoded decode(InputStream in, Buffers buf) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input == null ? Collections.emptyIterator() : ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IllegalArgumentException("Could not decode image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setDestination(buf.decoded(reader.getImageTypes(0).next(), width, height));
+                return new Decoded(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private Gray cropToInk(Decoded source, Buffers buf) {
+        int w = source.width();
+        int h = source.height();
+        int[] argb = buf.argb(w * h);
+        source.image().getRGB(0, 0, w, h, argb, 0, w);
+
+        byte[] full = buf.full(w * h);
+        int minX = w, minY = h, maxX = -1, maxY = -1;
+        for (int y = 0; y < h; y++) {
+            int row = y * w;
+            for (int x = 0; x < w; x++) {
+                int gray = luminanceOnWhite(argb[row + x]);
+                full[row + x] = (byte) gray;
+                if (gray < inkThreshold) {
+                    if (x < minX) minX = x;
+                    if (x > maxX) maxX = x;
+                    if (y < minY) minY = y;
+                    if (y > maxY) maxY = y;
+                }
+            }
+        }
+        if (maxX < 0) {
+            throw new IllegalArgumentException("Canvas is empty");
+        }
+
+        int pad = Math.max(2, Math.max(maxX - minX, maxY - minY) * paddingPercent / 100);
+        int cw = maxX - minX + 1 + 2 * pad;
+        int ch = maxY - minY + 1 + 2 * pad;
+        byte[] crop = buf.crop(cw * ch);
+        Arrays.fill(crop, 0, cw * ch, (byte) 0xFF);
+        for (int y = minY; y <= maxY; y++) {
+            System.arraycopy(full, y * w + minX, crop, (y - minY + pad) * cw + pad, maxX - minX + 1);
+        }
+        return new Gray(crop, cw, ch);
+    }
+
+    // Pads to a white square and box-averages it down to size x size.
+    private static Gray downscale(Gray src, int size, Buffers buf) {
+        int side = Math.max(src.width(), src.height());
+        if (side <= size) {
+            return src;
+        }
+        int offX = (side - src.width()) / 2;
+        int offY = (side - src.height()) / 2;
+
+        byte[] out = buf.scaled(size * size);
+        for (int ty = 0; ty < size; ty++) {
+            int y0 = ty * side / size;
+            int y1 = Math.max(y0 + 1, (ty + 1) * side / size);
+            for (int tx = 0; tx < size; tx++) {
+                int x0 = tx * side / size;
+                int x1 = Math.max(x0 + 1, (tx + 1) * side / size);
+
+                long sum = 0;
+                for (int py = y0; py < y1; py++) {
+                    int sy = py - offY;
+                    for (int px = x0; px < x1; px++) {
+                        int sx = px - offX;
+                        sum += sx < 0 || sy < 0 || sx >= src.width() || sy >= src.height()
+                                ? 255
+                                : src.pixels()[sy * src.width() + sx] & 0xFF;
+                    }
+                }
+                out[ty * size + tx] = (byte) (sum / ((long) (x1 - x0) * (y1 - y0)));
+            }
+        }
+        return new Gray(out, size, size);
+    }
+
+    private static byte[] encode(Gray gray) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(gray.width() * gray.height() / 4 + 64);
+        ImageIO.write(toImage(gray), "png", out);
+        return out.toByteArray();
+    }
+
+    // Wraps the pooled pixel array instead of copying it into a new image.
+    private static BufferedImage toImage(Gray gray) {
+        WritableRaster raster = Raster.createInterleavedRaster(
+                new DataBufferByte(gray.pixels(), gray.width() * gray.height()),
+                gray.width(), gray.height(), gray.width(), 1, new int[]{0}, null);
+        return new BufferedImage(GRAY, raster, false, null);
+    }
+
+    private static int luminanceOnWhite(int argb) {
+        int a = argb >>> 24;
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        int lum = (r * 299 + g * 587 + b * 114) / 1000;
+        return (lum * a + 255 * (255 - a)) / 255;
+    }
+
+    private static long record(Timer timer, long since) {
+        long now = System.nanoTime();
+        timer.record(now - since, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    private static Timer stepTimer(MeterRegistry meterRegistry, String step) {
+        return Timer.builder("canvas.preprocess")
+                .tag("step", step)
+                .register(meterRegistry);
+    }
+
+    private record Gray(byte[] pixels, int width, int height) {}
+
+    private record Decoded(BufferedImage image, int width, int height) {}
+
+    private static final class Buffers {
+        private BufferedImage decoded;
+        private int[] argb = new int[0];
+        private byte[] full = new byte[0];
+        private byte[] crop = new byte[0];
+        private byte[] scaled = new byte[0];
+
+        BufferedImage decoded(ImageTypeSpecifier type, int width, int height) {
+            if (decoded == null || decoded.getWidth() < width || decoded.getHeight() < height
+                    || !decoded.getColorModel().equals(type.getColorModel())
+                    || !decoded.getSampleModel().equals(type.getSampleModel(decoded.getWidth(), decoded.getHeight()))) {
+                decoded = type.createBufferedImage(width, height);
+            }
+            return decoded;
+        }
+
+        int[] argb(int size) {
+            if (argb.length < size) argb = new int[size];
+            return argb;
+        }
+
+        byte[] full(int size) {
+            if (full.length < size) full = new byte[size];
+            return full;
+        }
+
+        byte[] crop(int size) {
+            if (crop.length < size) crop = new byte[size];
+            return crop;
+        }
+
+        byte[] scaled(int size) {
+            if (scaled.length < size) scaled = new byte[size];
+            return scaled;
+        }
+
+        void trim(int maxPixels) {
+            if (decoded != null && (long) decoded.getWidth() * decoded.getHeight() > maxPixels) decoded = null;
+            if (argb.length > maxPixels) argb = new int[0];
+            if (full.length > maxPixels) full = new byte[0];
+            if (crop.length > maxPixels) crop = new byte[0];
+            if (scaled.length > maxPixels) scaled = new byte[0];
+        }
+    }
+}
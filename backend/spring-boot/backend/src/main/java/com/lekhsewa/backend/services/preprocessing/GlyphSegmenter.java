@@ -0,0 +1,221 @@
+package com.lekhsewa.backend.services.preprocessing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Splits a handwritten Devanagari word into glyph images, left to right.
+// Letters in a word hang off a shared headline (shirorekha), so the whole word is usually one
+// connected blob. The headline is found as the densest band of rows in the upper part of the
+// canvas and masked out; connected components of what remains are the letter bodies. Components
+// that overlap horizontally (a consonant and its matra, a dot above, a stroke below) are merged
+// into one glyph, and each glyph is cut out as a full-height column strip so it keeps its piece
+// of the headline, which is what the single-character engines were trained on.
+@Component
+public class GlyphSegmenter {
+
+    private static final int MAX_GLYPHS = 32;
+
+    private final int inkThreshold;
+    private final double headlineMinFill;
+    private final double mergeOverlap;
+
+    public GlyphSegmenter(
+            @Value("${preprocessing.ink-threshold:200}") int inkThreshold,
+            @Value("${preprocessing.segment.headline-min-fill:0.5}") double headlineMinFill,
+            @Value("${preprocessing.segment.merge-overlap:0.3}") double mergeOverlap) {
+        this.inkThreshold = inkThreshold;
+        this.headlineMinFill = headlineMinFill;
+        this.mergeOverlap = mergeOverlap;
+    }
+
+    // Expects a canvas already cropped to the ink (see CanvasPreprocessor). Returns the input
+    // unchanged when it holds a single glyph.
+    public List<byte[]> split(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        if (image == null) {
+            throw new IllegalArgumentException("Could not decode image");
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        byte[] gray = grayscale(image, w, h);
+
+        boolean[] ink = new boolean[w * h];
+        int[] rowInk = new int[h];
+        int minX = w, maxX = -1;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                if ((gray[y * w + x] & 0xFF) < inkThreshold) {
+                    ink[y * w + x] = true;
+                    rowInk[y]++;
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                }
+            }
+        }
+        if (maxX < 0) {
+            throw new IllegalArgumentException("Canvas is empty");
+        }
+
+        int[] headline = findHeadline(rowInk, maxX - minX + 1);
+        boolean[] body = ink;
+        if (headline != null) {
+            body = ink.clone();
+            Arrays.fill(body, headline[0] * w, (headline[1] + 1) * w, false);
+        }
+
+        List<int[]> spans = mergeOverlapping(componentSpans(body, w, h));
+        if (spans.size() <= 1) {
+            return List.of(png);
+        }
+        if (spans.size() > MAX_GLYPHS) {
+            throw new IllegalArgumentException("Word has more than " + MAX_GLYPHS + " glyphs");
+        }
+
+        List<byte[]> glyphs = new ArrayList<>(spans.size());
+        for (int i = 0; i < spans.size(); i++) {
+            // Cut halfway through the gap to each neighbour so the headline is shared out evenly.
+            int from = i == 0 ? 0 : (spans.get(i - 1)[1] + spans.get(i)[0]) / 2 + 1;
+            int to = i == spans.size() - 1 ? w - 1 : (spans.get(i)[1] + spans.get(i + 1)[0]) / 2;
+            glyphs.add(encode(gray, w, h, from, to));
+        }
+        return glyphs;
+    }
+
+    // Contiguous band of rows, in the top half, whose ink covers at least headlineMinFill of the word width.
+    private int[] findHeadline(int[] rowInk, int inkWidth) {
+        int limit = Math.max(1, rowInk.length / 2);
+        int best = -1;
+        for (int y = 0; y < limit; y++) {
+            if (best < 0 || rowInk[y] > rowInk[best]) {
+                best = y;
+            }
+        }
+        int threshold = (int) Math.ceil(inkWidth * headlineMinFill);
+        if (best < 0 || rowInk[best] < threshold) {
+            return null;
+        }
+        int top = best;
+        int bottom = best;
+        while (top > 0 && rowInk[top - 1] >= threshold) top--;
+        while (bottom < rowInk.length - 1 && rowInk[bottom + 1] >= threshold) bottom++;
+        return new int[]{top, bottom};
+    }
+
+    // Horizontal extent [minX, maxX, pixelCount] of each 8-connected component, found with an explicit stack.
+    private static List<int[]> componentSpans(boolean[] ink, int w, int h) {
+        boolean[] seen = new boolean[ink.length];
+        int[] stack = new int[ink.length];
+        List<int[]> spans = new ArrayList<>();
+        for (int start = 0; start < ink.length; start++) {
+            if (!ink[start] || seen[start]) {
+                continue;
+            }
+            int top = 0;
+            stack[top++] = start;
+            seen[start] = true;
+            int minX = w, maxX = -1, count = 0;
+            while (top > 0) {
+                int p = stack[--top];
+                int px = p % w;
+                int py = p / w;
+                minX = Math.min(minX, px);
+                maxX = Math.max(maxX, px);
+                count++;
+                for (int dy = -1; dy <= 1; dy++) {
+                    int ny = py + dy;
+                    if (ny < 0 || ny >= h) continue;
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = px + dx;
+                        if (nx < 0 || nx >= w) continue;
+                        int n = ny * w + nx;
+                        if (ink[n] && !seen[n]) {
+                            seen[n] = true;
+                            stack[top++] = n;
+                        }
+                    }
+                }
+            }
+            spans.add(new int[]{minX, maxX, count});
+        }
+        return spans;
+    }
+
+    // Sorts spans left to right and merges any that overlap by more than mergeOverlap of the narrower
+    // one. Specks too small to be a letter are folded into their nearest neighbour instead.
+    private List<int[]> mergeOverlapping(List<int[]> spans) {
+        if (spans.isEmpty()) {
+            return spans;
+        }
+        int largest = spans.stream().mapToInt(s -> s[2]).max().orElse(0);
+        List<int[]> letters = new ArrayList<>();
+        List<int[]> specks = new ArrayList<>();
+        for (int[] s : spans) {
+            (s[2] * 20 < largest ? specks : letters).add(s);
+        }
+        letters.sort(Comparator.comparingInt(s -> s[0]));
+
+        List<int[]> merged = new ArrayList<>();
+        for (int[] s : letters) {
+            int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && overlaps(last, s)) {
+                last[1] = Math.max(last[1], s[1]);
+                last[2] += s[2];
+            } else {
+                merged.add(new int[]{s[0], s[1], s[2]});
+            }
+        }
+        for (int[] s : specks) {
+            int centre = (s[0] + s[1]) / 2;
+            int[] nearest = merged.stream()
+                    .min(Comparator.comparingInt(m -> centre < m[0] ? m[0] - centre : Math.max(0, centre - m[1])))
+                    .orElseThrow();
+            nearest[0] = Math.min(nearest[0], s[0]);
+            nearest[1] = Math.max(nearest[1], s[1]);
+        }
+        return merged;
+    }
+
+    private boolean overlaps(int[] a, int[] b) {
+        int overlap = Math.min(a[1], b[1]) - Math.max(a[0], b[0]) + 1;
+        int narrower = Math.min(a[1] - a[0], b[1] - b[0]) + 1;
+        return overlap > 0 && overlap >= narrower * mergeOverlap;
+    }
+
+    private static byte[] grayscale(BufferedImage image, int w, int h) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            byte[] gray = new byte[w * h];
+            image.getRaster().getDataElements(0, 0, w, h, gray);
+            return gray;
+        }
+        BufferedImage converted = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        converted.getGraphics().drawImage(image, 0, 0, null);
+        return ((DataBufferByte) converted.getRaster().getDataBuffer()).getData();
+    }
+
+    private static byte[] encode(byte[] gray, int w, int h, int from, int to) throws IOException {
+        int cw = to - from + 1;
+        byte[] strip = new byte[cw * h];
+        for (int y = 0; y < h; y++) {
+            System.arraycopy(gray, y * w + from, strip, y * cw, cw);
+        }
+        BufferedImage template = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = Raster.createInterleavedRaster(
+                new DataBufferByte(strip, strip.length), cw, h, cw, 1, new int[]{0}, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(strip.length / 4 + 64);
+        ImageIO.write(new BufferedImage(template.getColorModel(), raster, false, null), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,100 @@
+package com.lekhsewa.backend.services.preprocessing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Checks the PNG signature and IHDR chunk without decoding any pixel data.
+@Component
+public class PngHeaderValidator {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int HEADER_LENGTH = 8 + 4 + 4 + 13;
+
+    private final long maxBytes;
+    private final int maxDimension;
+    private final long maxPixels;
+
+    public PngHeaderValidator(
+            @Value("${upload.max-bytes:2097152}") long maxBytes,
+            @Value("${upload.max-dimension:4096}") int maxDimension,
+            @Value("${upload.max-pixels:4000000}") long maxPixels) {
+        this.maxBytes = maxBytes;
+        this.maxDimension = maxDimension;
+        this.maxPixels = maxPixels;
+    }
+
+    public PngInfo validate(MultipartFile file) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("Image is empty");
+        }
+        checkSize(file.getSize());
+        try (InputStream in = file.getInputStream()) {
+            return parseHeader(in.readNBytes(HEADER_LENGTH));
+        }
+    }
+
+    public PngInfo validate(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("Image is empty");
+        }
+        checkSize(bytes.length);
+        return parseHeader(Arrays.copyOf(bytes, Math.min(bytes.length, HEADER_LENGTH)));
+    }
+
+    private void checkSize(long size) {
+        if (size > maxBytes) {
+            throw new IllegalArgumentException("Image is " + size + " bytes, limit is " + maxBytes);
+        }
+    }
+
+    private PngInfo parseHeader(byte[] header) {
+        if (header.length < SIGNATURE.length || !Arrays.equals(header, 0, SIGNATURE.length, SIGNATURE, 0, SIGNATURE.length)) {
+            throw new IllegalArgumentException("Only PNG allowed");
+        }
+        if (header.length < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Malformed PNG: truncated IHDR chunk");
+        }
+        if (readInt(header, 8) != 13 || header[12] != 'I' || header[13] != 'H' || header[14] != 'D' || header[15] != 'R') {
+            throw new IllegalArgumentException("Malformed PNG: missing IHDR chunk");
+        }
+
+        long width = readInt(header, 16) & 0xFFFFFFFFL;
+        long height = readInt(header, 20) & 0xFFFFFFFFL;
+        int bitDepth = header[24];
+        int colorType = header[25];
+
+        if (width == 0 || height == 0) {
+            throw new IllegalArgumentException("Malformed PNG: zero width or height");
+        }
+        if (width > maxDimension || height > maxDimension) {
+            throw new IllegalArgumentException("Image is " + width + "x" + height + ", limit is " + maxDimension + " per side");
+        }
+        if (width * height > maxPixels) {
+            throw new IllegalArgumentException("Image has " + width * height + " pixels, limit is " + maxPixels);
+        }
+        if (!isValidDepth(colorType, bitDepth)) {
+            throw new IllegalArgumentException("Malformed PNG: bit depth " + bitDepth + " is invalid for color type " + colorType);
+        }
+        return new PngInfo((int) width, (int) height, bitDepth, colorType);
+    }
+
+    private static boolean isValidDepth(int colorType, int bitDepth) {
+        return switch (colorType) {
+            case 0 -> bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+            case 3 -> bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+            case 2, 4, 6 -> bitDepth == 8 || bitDepth == 16;
+            default -> false;
+        };
+    }
+
+    private static int readInt(byte[] b, int offset) {
+        return ((b[offset] & 0xFF) << 24) | ((b[offset + 1] & 0xFF) << 16) | ((b[offset + 2] & 0xFF) << 8) | (b[offset + 3] & 0xFF);
+    }
+
+    public record PngInfo(int width, int height, int bitDepth, int colorType) {}
+}
@@ -0,0 +1,273 @@
+package com.lekhsewa.backend.services.preprocessing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Decodes the compact stroke upload format and rasterizes it straight to the size an engine wants.
+//
+// Format (all integers are unsigned LEB128 varints unless noted, deltas are zigzag-encoded):
+//   'L' 'S' 0x01                      magic and version
+//   width, height                     canvas size in CSS pixels
+//   lineWidth                         pen width in canvas pixels
+//   strokeCount
+//   per stroke: pointCount, then x, y, t of the first point (t = ms since the drawing started)
+//               followed by dx, dy, dt for every further point
+//
+// A typical character is a few strokes of a few dozen points, i.e. well under 1 KB against tens of
+// KB for the PNG. Timing is kept in the stored form even though the raster does not use it.
+@Component
+public class StrokeRasterizer {
+
+    public static final String CONTENT_TYPE = "application/x-lekhsewa-strokes";
+
+    private static final byte[] MAGIC = {'L', 'S', 1};
+
+    private final int maxBytes;
+    private final int maxDimension;
+    private final int maxPoints;
+    private final int defaultSize;
+    private final int paddingPercent;
+
+    private final ThreadLocal<byte[]> buffer = ThreadLocal.withInitial(() -> new byte[0]);
+
+    public StrokeRasterizer(
+            @Value("${upload.strokes.max-bytes:65536}") int maxBytes,
+            @Value("${upload.max-dimension:4096}") int maxDimension,
+            @Value("${upload.strokes.max-points:20000}") int maxPoints,
+            @Value("${preprocessing.strokes.default-size:128}") int defaultSize,
+            @Value("${preprocessing.padding-percent:10}") int paddingPercent) {
+        this.maxBytes = maxBytes;
+        this.maxDimension = maxDimension;
+        this.maxPoints = maxPoints;
+        this.defaultSize = defaultSize;
+        this.paddingPercent = paddingPercent;
+    }
+
+    // Points of each stroke are stored flat as x0, y0, t0, x1, y1, t1, ...
+    public record Drawing(int width, int height, int lineWidth, List<int[]> strokes) {}
+
+    public Drawing decode(byte[] data) {
+        if (data == null || data.length < MAGIC.length || !Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw new IllegalArgumentException("Not a stroke upload");
+        }
+        if (data.length > maxBytes) {
+            throw new IllegalArgumentException("Stroke data is " + data.length + " bytes, limit is " + maxBytes);
+        }
+        Reader in = new Reader(data, MAGIC.length);
+        int width = in.varint();
+        int height = in.varint();
+        int lineWidth = in.varint();
+        validateCanvas(width, height, lineWidth);
+
+        int strokeCount = in.varint();
+        List<int[]> strokes = new ArrayList<>(Math.max(0, Math.min(strokeCount, 256)));
+        int total = 0;
+        for (int s = 0; s < strokeCount; s++) {
+            int points = in.varint();
+            // Checked before adding so a huge count cannot wrap total; a point takes at least three
+            // bytes, so the array is never larger than the upload can actually fill.
+            if (points <= 0 || points > maxPoints - total) {
+                throw new IllegalArgumentException("Drawing has more than " + maxPoints + " points");
+            }
+            if (points > in.remaining() / 3) {
+                throw new IllegalArgumentException("Truncated stroke data");
+            }
+            total += points;
+            int[] flat = new int[points * 3];
+            int x = 0, y = 0, t = 0;
+            for (int p = 0; p < points; p++) {
+                x = p == 0 ? in.varint() : x + in.zigzag();
+                y = p == 0 ? in.varint() : y + in.zigzag();
+                t = p == 0 ? in.varint() : t + in.zigzag();
+                if (x < 0 || y < 0 || x > width || y > height) {
+                    throw new IllegalArgumentException("Point outside the canvas");
+                }
+                flat[p * 3] = x;
+                flat[p * 3 + 1] = y;
+                flat[p * 3 + 2] = t;
+            }
+            strokes.add(flat);
+        }
+        if (strokes.isEmpty()) {
+            throw new IllegalArgumentException("Canvas is empty");
+        }
+        if (in.remaining() != 0) {
+            throw new IllegalArgumentException("Trailing bytes after stroke data");
+        }
+        return new Drawing(width, height, lineWidth, strokes);
+    }
+
+    // The header checks decode applies, for callers that get the canvas size some other way.
+    public void validateCanvas(int width, int height, int lineWidth) {
+        if (width <= 0 || height <= 0 || width > maxDimension || height > maxDimension) {
+            throw new IllegalArgumentException("Canvas is " + width + "x" + height + ", limit is " + maxDimension + " per side");
+        }
+        if (lineWidth <= 0 || lineWidth > Math.max(width, height)) {
+            throw new IllegalArgumentException("Invalid line width " + lineWidth);
+        }
+    }
+
+    public static byte[] encode(Drawing drawing) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.writeBytes(MAGIC);
+        writeVarint(out, drawing.width());
+        writeVarint(out, drawing.height());
+        writeVarint(out, drawing.lineWidth());
+        writeVarint(out, drawing.strokes().size());
+        for (int[] stroke : drawing.strokes()) {
+            writeVarint(out, stroke.length / 3);
+            for (int i = 0; i < stroke.length; i += 3) {
+                if (i == 0) {
+                    writeVarint(out, stroke[0]);
+                    writeVarint(out, stroke[1]);
+                    writeVarint(out, stroke[2]);
+                } else {
+                    writeZigzag(out, stroke[i] - stroke[i - 3]);
+                    writeZigzag(out, stroke[i + 1] - stroke[i - 2]);
+                    writeZigzag(out, stroke[i + 2] - stroke[i - 1]);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeZigzag(ByteArrayOutputStream out, int value) {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    // Same framing as CanvasPreprocessor: crop to the ink with padding, centre in a white square.
+    // Lines are stamped directly at the output resolution, so no full-size canvas is ever drawn.
+    public byte[] rasterize(byte[] data, int targetSize) throws IOException {
+        Drawing drawing = decode(data);
+        int size = targetSize > 0 ? targetSize : defaultSize;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int[] stroke : drawing.strokes()) {
+            for (int i = 0; i < stroke.length; i += 3) {
+                minX = Math.min(minX, stroke[i]);
+                maxX = Math.max(maxX, stroke[i]);
+                minY = Math.min(minY, stroke[i + 1]);
+                maxY = Math.max(maxY, stroke[i + 1]);
+            }
+        }
+        double inkSide = Math.max(maxX - minX, maxY - minY) + drawing.lineWidth();
+        double side = inkSide + 2 * Math.max(2, inkSide * paddingPercent / 100);
+        double scale = size / side;
+        double originX = (minX + maxX) / 2.0 - side / 2;
+        double originY = (minY + maxY) / 2.0 - side / 2;
+        double radius = Math.max(0.5, drawing.lineWidth() * scale / 2);
+
+        byte[] pixels = buffer(size * size);
+        Arrays.fill(pixels, 0, size * size, (byte) 0xFF);
+        for (int[] stroke : drawing.strokes()) {
+            double px = (stroke[0] - originX) * scale;
+            double py = (stroke[1] - originY) * scale;
+            stamp(pixels, size, px, py, radius);
+            for (int i = 3; i < stroke.length; i += 3) {
+                double nx = (stroke[i] - originX) * scale;
+                double ny = (stroke[i + 1] - originY) * scale;
+                line(pixels, size, px, py, nx, ny, radius);
+                px = nx;
+                py = ny;
+            }
+        }
+        return encode(pixels, size);
+    }
+
+    private static void line(byte[] pixels, int size, double x0, double y0, double x1, double y1, double radius) {
+        double length = Math.hypot(x1 - x0, y1 - y0);
+        int steps = (int) Math.ceil(length / Math.max(0.5, radius / 2));
+        for (int i = 1; i <= steps; i++) {
+            double f = (double) i / steps;
+            stamp(pixels, size, x0 + (x1 - x0) * f, y0 + (y1 - y0) * f, radius);
+        }
+    }
+
+    private static void stamp(byte[] pixels, int size, double cx, double cy, double radius) {
+        int x0 = Math.max(0, (int) Math.floor(cx - radius));
+        int x1 = Math.min(size - 1, (int) Math.ceil(cx + radius));
+        int y0 = Math.max(0, (int) Math.floor(cy - radius));
+        int y1 = Math.min(size - 1, (int) Math.ceil(cy + radius));
+        double r2 = radius * radius;
+        for (int y = y0; y <= y1; y++) {
+            double dy = y + 0.5 - cy;
+            for (int x = x0; x <= x1; x++) {
+                double dx = x + 0.5 - cx;
+                if (dx * dx + dy * dy <= r2) {
+                    pixels[y * size + x] = 0;
+                }
+            }
+        }
+    }
+
+    private byte[] buffer(int length) {
+        byte[] pixels = buffer.get();
+        if (pixels.length < length) {
+            pixels = new byte[length];
+            buffer.set(pixels);
+        }
+        return pixels;
+    }
+
+    private static byte[] encode(byte[] pixels, int size) throws IOException {
+        BufferedImage template = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = Raster.createInterleavedRaster(
+                new DataBufferByte(pixels, size * size), size, size, size, 1, new int[]{0}, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * size / 8 + 64);
+        ImageIO.write(new BufferedImage(template.getColorModel(), raster, false, null), "png", out);
+        return out.toByteArray();
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data, int pos) {
+            this.data = data;
+            this.pos = pos;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (pos >= data.length) {
+                    throw new IllegalArgumentException("Truncated stroke data");
+                }
+                byte b = data[pos++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in stroke data");
+        }
+
+        int zigzag() {
+            int raw = varint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        int remaining() {
+            return data.length - pos;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.lekhsewa.backend.services.recognition;
+
+import com.lekhsewa.backend.services.preprocessing.CanvasPreprocessor;
+import com.lekhsewa.backend.services.preprocessing.StrokeRasterizer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+// Converts a stored canvas (normalized PNG or stroke vectors) into what a given engine expects and calls it.
+@Component
+@RequiredArgsConstructor
+public class EngineInputPreparer {
+
+    private final CanvasPreprocessor canvasPreprocessor;
+    private final StrokeRasterizer strokeRasterizer;
+
+    public RecognitionResult recognize(RecognitionEngine engine, byte[] imageBytes, String contentType) throws Exception {
+        Input input = prepare(engine, imageBytes, contentType);
+        return engine.recognize(input.bytes(), input.contentType());
+    }
+
+    public Input prepare(RecognitionEngine engine, byte[] imageBytes, String contentType) throws Exception {
+        if (engine.preparesOwnInput()) {
+            return new Input(imageBytes, contentType);
+        }
+        if (StrokeRasterizer.CONTENT_TYPE.equals(contentType)) {
+            return new Input(strokeRasterizer.rasterize(imageBytes, engine.targetSize()), MediaType.IMAGE_PNG_VALUE);
+        }
+        return engine.targetSize() > 0
+                ? new Input(canvasPreprocessor.preprocess(imageBytes, engine.targetSize()), MediaType.IMAGE_PNG_VALUE)
+                : new Input(imageBytes, contentType);
+    }
+
+    public record Input(byte[] bytes, String contentType) {}
+}
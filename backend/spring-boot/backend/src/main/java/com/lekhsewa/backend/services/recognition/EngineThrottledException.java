@@ -0,0 +1,8 @@
+package com.lekhsewa.backend.services.recognition;
+
+public class EngineThrottledException extends RuntimeException {
+
+    public EngineThrottledException(String engine, Throwable cause) {
+        super("Recognition engine " + engine + " is throttling requests", cause);
+    }
+}
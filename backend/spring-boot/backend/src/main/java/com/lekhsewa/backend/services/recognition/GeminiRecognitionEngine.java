@@ -0,0 +1,87 @@
+package com.lekhsewa.backend.services.recognition;
+
+import com.google.genai.Client;
+import com.google.genai.errors.ApiException;
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.HttpOptions;
+import com.google.genai.types.Part;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(prefix = "recognition.gemini", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class GeminiRecognitionEngine implements RecognitionEngine {
+
+    private final Client client;
+    private final String model;
+    private final String prompt;
+    private final int targetSize;
+
+    public GeminiRecognitionEngine(
+            @Value("${recognition.gemini.api-key:}") String apiKey,
+            @Value("${recognition.gemini.model:gemini-2.5-flash}") String model,
+            @Value("${recognition.gemini.prompt}") String prompt,
+            @Value("${recognition.gemini.timeout-ms:30000}") int timeoutMs,
+            @Value("${recognition.gemini.target-size:256}") int targetSize) {
+        // One client per process so the underlying HTTP connection pool and TLS sessions are reused.
+        Client.Builder builder = Client.builder()
+                .httpOptions(HttpOptions.builder().timeout(timeoutMs).build());
+        if (!apiKey.isBlank()) {
+            builder.apiKey(apiKey);
+        }
+        this.client = builder.build();
+        this.model = model;
+        this.prompt = prompt;
+        this.targetSize = targetSize;
+    }
+
+    @Override
+    public String name() {
+        return "gemini";
+    }
+
+    @Override
+    public RecognitionResult recognize(byte[] imageBytes, String contentType) {
+        if (imageBytes == null || imageBytes.length == 0) {
+            throw new IllegalArgumentException("File bytes are empty");
+        }
+
+        Content multimodalContent = Content.fromParts(
+                Part.fromText(prompt),
+                Part.fromBytes(imageBytes, contentType)
+        );
+        GenerateContentResponse response;
+        try {
+            response = client.models.generateContent(model, multimodalContent, null);
+        } catch (ApiException e) {
+            if (e.code() == 429 || e.code() == 503) {
+                throw new EngineThrottledException(name(), e);
+            }
+            throw e;
+        }
+
+        String text = response.text();
+        if (text == null) {
+            throw new IllegalStateException("Gemini returned an empty response");
+        }
+        return new RecognitionResult(text.trim(), null, name());
+    }
+
+    @Override
+    public int targetSize() {
+        return targetSize;
+    }
+
+    @Override
+    public void warmUp() {
+        client.models.get(model, null);
+    }
+
+    @PreDestroy
+    public void close() {
+        client.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.lekhsewa.backend.services.recognition;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Turns glyphs recognized in visual (left to right) order into a word in Unicode logical order:
+// the pre-base short-i matra moves after its cluster, marks that were segmented as glyphs of their own
+// are put back in the order Unicode stores them, and vowels drawn in two parts are composed. Reph and
+// other marks that sit above a later letter are left where the segmenter put them.
+public final class GlyphJoiner {
+
+    private static final char SHORT_I = '\u093F';
+    private static final char NUKTA = '\u093C';
+    private static final char VIRAMA = '\u094D';
+
+    private GlyphJoiner() {
+    }
+
+    public static String join(List<String> glyphs) {
+        List<String> parts = new ArrayList<>(glyphs.size() + 1);
+        for (String glyph : glyphs) {
+            String part = glyph.strip();
+            if (part.length() > 1 && part.charAt(0) == SHORT_I) {
+                // The engine read the matra and its consonant in visual order too.
+                parts.add(String.valueOf(SHORT_I));
+                parts.add(part.substring(1));
+            } else {
+                parts.add(part);
+            }
+        }
+
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < parts.size(); i++) {
+            String part = parts.get(i);
+            if (part.equals(String.valueOf(SHORT_I)) && i + 1 < parts.size()) {
+                // Goes after the whole next cluster, so a conjunct such as "स्त" + "ि" stays intact,
+                // also when its half consonant was cut out as a glyph of its own.
+                StringBuilder cluster = new StringBuilder(parts.get(++i));
+                while (!cluster.isEmpty() && cluster.charAt(cluster.length() - 1) == VIRAMA && i + 1 < parts.size()) {
+                    cluster.append(parts.get(++i));
+                }
+                word.append(cluster).append(SHORT_I);
+            } else {
+                word.append(part);
+            }
+        }
+        return Normalizer.normalize(composeVowels(orderMarks(word)), Normalizer.Form.NFC);
+    }
+
+    // Within each run of marks: nukta, then vowel signs, then candrabindu, anusvara and visarga.
+    private static String orderMarks(CharSequence text) {
+        StringBuilder out = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            if (markRank(text.charAt(i)) < 0) {
+                out.append(text.charAt(i++));
+                continue;
+            }
+            int start = out.length();
+            for (; i < text.length() && markRank(text.charAt(i)) >= 0; i++) {
+                char mark = text.charAt(i);
+                int at = out.length();
+                while (at > start && markRank(out.charAt(at - 1)) > markRank(mark)) {
+                    at--;
+                }
+                out.insert(at, mark);
+            }
+        }
+        return out.toString();
+    }
+
+    // Sequences Unicode says not to use for these vowels, as a recognizer produces them when the
+    // aa-bar and the top stroke come back as separate glyphs.
+    private static String composeVowels(String text) {
+        return text
+                .replace("\u093E\u0947", "\u094B").replace("\u0947\u093E", "\u094B")
+                .replace("\u093E\u0948", "\u094C").replace("\u0948\u093E", "\u094C")
+                .replace("\u0905\u093E", "\u0906")
+                .replace("\u0905\u094B", "\u0913")
+                .replace("\u0905\u094C", "\u0914");
+    }
+
+    private static int markRank(char c) {
+        if (c == NUKTA) {
+            return 0;
+        }
+        if ((c >= '\u093A' && c <= '\u094C' && c != '\u093D') || c == '\u094E' || c == '\u094F'
+                || (c >= '\u0955' && c <= '\u0957') || c == '\u0962' || c == '\u0963') {
+            return 1;
+        }
+        if (c >= '\u0900' && c <= '\u0903') {
+            return 2;
+        }
+        return -1;
+    }
+}
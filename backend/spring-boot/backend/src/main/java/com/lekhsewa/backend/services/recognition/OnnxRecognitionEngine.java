@@ -0,0 +1,178 @@
+package com.lekhsewa.backend.services.recognition;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(prefix = "recognition.onnx", name = "enabled", havingValue = "true")
+public class OnnxRecognitionEngine implements RecognitionEngine {
+
+    static final int INPUT_SIZE = 64;
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final String inputName;
+    private final String[] labels;
+    private final int topK;
+
+    public OnnxRecognitionEngine(
+            ObjectMapper objectMapper,
+            @Value("${recognition.onnx.model-path}") Path modelPath,
+            @Value("${recognition.onnx.labels-path}") Path labelsPath,
+            @Value("${recognition.onnx.intra-op-threads:1}") int intraOpThreads,
+            @Value("${recognition.onnx.top-k:5}") int topK) throws OrtException, IOException {
+        this.environment = OrtEnvironment.getEnvironment();
+
+        // OrtSession.run is thread-safe, so one session serves every request thread.
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            options.setIntraOpNumThreads(intraOpThreads);
+            this.session = environment.createSession(modelPath.toString(), options);
+        }
+        this.inputName = session.getInputNames().iterator().next();
+        this.labels = loadLabels(objectMapper, labelsPath);
+        this.topK = topK;
+    }
+
+    @Override
+    public String name() {
+        return "onnx";
+    }
+
+    @Override
+    public boolean inProcess() {
+        return true;
+    }
+
+    @Override
+    public RecognitionResult recognize(byte[] imageBytes, String contentType) throws Exception {
+        if (imageBytes == null || imageBytes.length == 0) {
+            throw new IllegalArgumentException("File bytes are empty");
+        }
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+        if (image == null) {
+            throw new IllegalArgumentException("Could not decode image");
+        }
+
+        float[] probabilities = run(toInputTensor(image));
+        List<RecognitionResult.Candidate> candidates = topCandidates(probabilities);
+        RecognitionResult.Candidate best = candidates.get(0);
+        return new RecognitionResult(best.character(), best.confidence(), name(), candidates);
+    }
+
+    @Override
+    public int targetSize() {
+        return INPUT_SIZE;
+    }
+
+    @Override
+    public void warmUp() throws OrtException {
+        float[] blank = new float[INPUT_SIZE * INPUT_SIZE];
+        Arrays.fill(blank, 1f);
+        run(blank);
+    }
+
+    @PreDestroy
+    public void close() throws OrtException {
+        session.close();
+    }
+
+    private float[] run(float[] input) throws OrtException {
+        long[] shape = {1, INPUT_SIZE, INPUT_SIZE, 1};
+        try (OnnxTensor tensor = OnnxTensor.createTensor(environment, FloatBuffer.wrap(input), shape);
+             OrtSession.Result output = session.run(Map.of(inputName, tensor))) {
+            return ((float[][]) output.get(0).getValue())[0];
+        }
+    }
+
+    private List<RecognitionResult.Candidate> topCandidates(float[] probabilities) {
+        int k = Math.min(topK, probabilities.length);
+        int[] best = new int[k];
+        Arrays.fill(best, -1);
+
+        for (int i = 0; i < probabilities.length; i++) {
+            for (int slot = 0; slot < k; slot++) {
+                if (best[slot] == -1 || probabilities[i] > probabilities[best[slot]]) {
+                    System.arraycopy(best, slot, best, slot + 1, k - slot - 1);
+                    best[slot] = i;
+                    break;
+                }
+            }
+        }
+
+        List<RecognitionResult.Candidate> candidates = new ArrayList<>(k);
+        for (int index : best) {
+            String character = index < labels.length && labels[index] != null ? labels[index] : "?";
+            candidates.add(new RecognitionResult.Candidate(character, probabilities[index]));
+        }
+        return candidates;
+    }
+
+    // Same preprocessing as the Flask app: grayscale in [0, 1], padded to a white square, resized to 64x64.
+    static float[] toInputTensor(BufferedImage source) {
+        int side = Math.max(source.getWidth(), source.getHeight());
+        BufferedImage square = new BufferedImage(side, side, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = square.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, side, side);
+        g.drawImage(source, (side - source.getWidth()) / 2, (side - source.getHeight()) / 2, null);
+        g.dispose();
+
+        BufferedImage scaled = new BufferedImage(INPUT_SIZE, INPUT_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        g = scaled.createGraphics();
+        g.drawImage(square.getScaledInstance(INPUT_SIZE, INPUT_SIZE, Image.SCALE_AREA_AVERAGING), 0, 0, null);
+        g.dispose();
+
+        float[] input = new float[INPUT_SIZE * INPUT_SIZE];
+        var raster = scaled.getRaster();
+        for (int y = 0; y < INPUT_SIZE; y++) {
+            for (int x = 0; x < INPUT_SIZE; x++) {
+                input[y * INPUT_SIZE + x] = raster.getSample(x, y, 0) / 255f;
+            }
+        }
+        return input;
+    }
+
+    private static String[] loadLabels(ObjectMapper objectMapper, Path labelsPath) throws IOException {
+        JsonNode labelToChar = objectMapper.readTree(Files.readAllBytes(labelsPath)).path("label_to_char");
+        if (labelToChar.isMissingNode() || labelToChar.isEmpty()) {
+            throw new IllegalStateException("No label_to_char mapping in " + labelsPath);
+        }
+
+        String[] labels = new String[labelToChar.size()];
+        int max = -1;
+        for (Map.Entry<String, JsonNode> entry : labelToChar.properties()) {
+            int index = Integer.parseInt(entry.getKey());
+            if (index >= labels.length) {
+                labels = Arrays.copyOf(labels, Math.max(index + 1, labels.length * 2));
+            }
+            labels[index] = entry.getValue().asText();
+            max = Math.max(max, index);
+        }
+        return Arrays.copyOf(labels, max + 1);
+    }
+}
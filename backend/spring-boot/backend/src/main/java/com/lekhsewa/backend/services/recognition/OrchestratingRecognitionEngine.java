@@ -0,0 +1,255 @@
+package com.lekhsewa.backend.services.recognition;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Select with recognition.engine=orchestrated. Asks the cheap primary engine first and only escalates
+// to the fallback when the primary is unsure (confidence below the threshold), cannot read the canvas,
+// or fails. Every sub-call goes through that engine's circuit breaker, so a throttling fallback is
+// left alone like it would be if it were the active engine. Calls to remote engines are hedged: if
+// one has not answered within that engine's recent p95, an identical second request is sent and
+// whichever answers first wins. The result names the engine that answered and the reason.
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "recognition.orchestrator", name = "enabled", havingValue = "true")
+public class OrchestratingRecognitionEngine implements RecognitionEngine {
+
+    private final ObjectProvider<RecognitionEngineRegistry> registry;
+    private final EngineInputPreparer inputPreparer;
+    private final RecognitionAdmission admission;
+    private final MeterRegistry meterRegistry;
+    private final String primaryName;
+    private final String fallbackName;
+    private final double confidenceThreshold;
+    private final double hedgeQuantile;
+    private final long hedgeInitialMillis;
+    private final long hedgeMinMillis;
+    private final Semaphore hedgeBudget;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    public OrchestratingRecognitionEngine(
+            ObjectProvider<RecognitionEngineRegistry> registry,
+            EngineInputPreparer inputPreparer,
+            RecognitionAdmission admission,
+            MeterRegistry meterRegistry,
+            @Value("${recognition.orchestrator.primary:onnx}") String primaryName,
+            @Value("${recognition.orchestrator.fallback:gemini}") String fallbackName,
+            @Value("${recognition.orchestrator.confidence-threshold:0.6}") double confidenceThreshold,
+            @Value("${recognition.orchestrator.hedge-quantile:0.95}") double hedgeQuantile,
+            @Value("${recognition.orchestrator.hedge-initial-ms:3000}") long hedgeInitialMillis,
+            @Value("${recognition.orchestrator.hedge-min-ms:50}") long hedgeMinMillis,
+            @Value("${recognition.orchestrator.hedge-max-in-flight:4}") int hedgeMaxInFlight) {
+        this.registry = registry;
+        this.inputPreparer = inputPreparer;
+        this.admission = admission;
+        this.meterRegistry = meterRegistry;
+        this.primaryName = primaryName;
+        this.fallbackName = fallbackName;
+        this.confidenceThreshold = confidenceThreshold;
+        this.hedgeQuantile = hedgeQuantile;
+        this.hedgeInitialMillis = hedgeInitialMillis;
+        this.hedgeMinMillis = hedgeMinMillis;
+        this.hedgeBudget = new Semaphore(hedgeMaxInFlight);
+    }
+
+    @Override
+    public String name() {
+        return "orchestrated";
+    }
+
+    @Override
+    public boolean preparesOwnInput() {
+        return true;
+    }
+
+    @Override
+    public RecognitionResult recognize(byte[] imageBytes, String contentType) throws Exception {
+        RecognitionResult primary;
+        try {
+            primary = hedged(primaryName, imageBytes, contentType);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            log.debug("Primary engine {} failed, escalating: {}", primaryName, e.toString());
+            return decided(hedged(fallbackName, imageBytes, contentType), "primary-failed");
+        }
+
+        if (!primary.unrecognized()) {
+            if (primary.confidence() == null) {
+                return decided(primary, "primary-no-confidence");
+            }
+            if (primary.confidence() >= confidenceThreshold) {
+                return decided(primary, "primary-confident");
+            }
+        }
+
+        String why = primary.unrecognized() ? "primary-unrecognized" : "primary-low-confidence";
+        RecognitionResult fallback;
+        try {
+            fallback = hedged(fallbackName, imageBytes, contentType);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (EngineThrottledException e) {
+            // The primary already answered; a busy fallback is no reason to fail the request.
+            return decided(primary, why + ",fallback-throttled");
+        } catch (Exception e) {
+            return decided(primary, why + ",fallback-failed");
+        }
+        // A guess from the primary still beats "not recognized" from the fallback.
+        if (fallback.unrecognized() && !primary.unrecognized()) {
+            return decided(primary, why + ",fallback-unrecognized");
+        }
+        return decided(fallback, why);
+    }
+
+    @Override
+    public void warmUp() {
+        // The registry warms the primary and fallback engines itself.
+    }
+
+    // Runs one engine call; if a remote engine is still running after its recent p95, sends a duplicate
+    // (budget permitting) and returns whichever finishes first successfully.
+    //
+    // The loser is not cancelled: CompletableFuture.cancel never interrupts the task, and the upstream
+    // request would go on to the end anyway, so every hedge costs a full extra engine call.
+    // The caller's admission permit is released as soon as this returns, so the hedge permit is held
+    // until both calls have finished and hedge-max-in-flight is what bounds that extra load.
+    private RecognitionResult hedged(String engineName, byte[] imageBytes, String contentType) throws Exception {
+        RecognitionEngine engine = engine(engineName);
+        CompletableFuture<RecognitionResult> first = call(engine, imageBytes, contentType);
+        if (engine.inProcess()) {
+            // A local engine is slow because the CPU is busy; a duplicate would only add to that.
+            return unwrap(first);
+        }
+        try {
+            return first.get(hedgeDelayMillis(engineName), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (!hedgeBudget.tryAcquire()) {
+                return unwrap(first);
+            }
+            meterRegistry.counter("recognition.hedge", "engine", engineName, "outcome", "sent").increment();
+            CompletableFuture<RecognitionResult> second = call(engine, imageBytes, contentType);
+            CompletableFuture.allOf(first, second).whenComplete((r, error) -> hedgeBudget.release());
+
+            RecognitionResult result = unwrap(firstSuccessful(first, second));
+            if (second.isDone() && !second.isCompletedExceptionally() && second.join() == result) {
+                meterRegistry.counter("recognition.hedge", "engine", engineName, "outcome", "won").increment();
+            }
+            return result;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private RecognitionEngine engine(String engineName) {
+        try {
+            return registry.getObject().get(engineName);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Orchestrated engine '" + engineName + "' is not enabled", e);
+        }
+    }
+
+    private CompletableFuture<RecognitionResult> call(RecognitionEngine engine, byte[] imageBytes, String contentType) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                // The caller holds the admission permit for "orchestrated", so only the breaker applies.
+                RecognitionResult result = admission.guarded(engine.name(), () -> inputPreparer.recognize(engine, imageBytes, contentType));
+                latencies.computeIfAbsent(engine.name(), name -> new LatencyWindow()).add((System.nanoTime() - start) / 1_000_000);
+                return result;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    private long hedgeDelayMillis(String engineName) {
+        LatencyWindow window = latencies.get(engineName);
+        long observed = window == null ? -1 : window.quantile(hedgeQuantile);
+        return Math.max(hedgeMinMillis, observed < 0 ? hedgeInitialMillis : observed);
+    }
+
+    // Completes with the first success, or exceptionally once both have failed.
+    private static CompletableFuture<RecognitionResult> firstSuccessful(CompletableFuture<RecognitionResult> a, CompletableFuture<RecognitionResult> b) {
+        CompletableFuture<RecognitionResult> winner = new CompletableFuture<>();
+        a.whenComplete((r, error) -> {
+            if (error == null) winner.complete(r);
+            else b.whenComplete((r2, error2) -> {
+                if (error2 == null) winner.complete(r2);
+                else winner.completeExceptionally(error);
+            });
+        });
+        b.whenComplete((r, error) -> {
+            if (error == null) winner.complete(r);
+        });
+        return winner;
+    }
+
+    private static RecognitionResult unwrap(CompletableFuture<RecognitionResult> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            throw cause instanceof Exception exception ? exception : e;
+        }
+    }
+
+    private RecognitionResult decided(RecognitionResult result, String reason) {
+        meterRegistry.counter("recognition.orchestrator", "engine", result.engine(), "reason", reason).increment();
+        return result.withReason(reason);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Last 256 latencies of one engine.
+    private static final class LatencyWindow {
+        private static final int SIZE = 256;
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples = new long[SIZE];
+        private int count;
+        private int next;
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % SIZE;
+            count = Math.min(count + 1, SIZE);
+        }
+
+        // -1 until there are enough samples to trust.
+        synchronized long quantile(double q) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(count - 1, Math.ceil(q * count) - 1)];
+        }
+    }
+}
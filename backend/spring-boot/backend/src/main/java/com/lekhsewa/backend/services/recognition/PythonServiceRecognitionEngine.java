@@ -0,0 +1,88 @@
+package com.lekhsewa.backend.services.recognition;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(prefix = "recognition.python", name = "enabled", havingValue = "true")
+public class PythonServiceRecognitionEngine implements ReactiveRecognitionEngine {
+
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_MAP =
+            new ParameterizedTypeReference<>() {};
+
+    private final WebClient djangoClient;
+    private final Duration timeout;
+
+    public PythonServiceRecognitionEngine(
+            WebClient djangoClient,
+            @Value("${recognition.python.timeout-ms:30000}") long timeoutMs) {
+        this.djangoClient = djangoClient;
+        this.timeout = Duration.ofMillis(timeoutMs);
+    }
+
+    @Override
+    public String name() {
+        return "python";
+    }
+
+    @Override
+    public RecognitionResult recognize(byte[] imageBytes, String contentType) {
+        return recognizeReactive(imageBytes, contentType).block();
+    }
+
+    @Override
+    public Mono<RecognitionResult> recognizeReactive(byte[] imageBytes, String contentType) {
+        if (imageBytes == null || imageBytes.length == 0) {
+            return Mono.error(new IllegalArgumentException("File bytes are empty"));
+        }
+
+        Map<String, String> payload = Map.of("image", Base64.getEncoder().encodeToString(imageBytes));
+
+        return djangoClient.post()
+                .uri("/recognize")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(payload)
+                .retrieve()
+                .bodyToMono(JSON_MAP)
+                .timeout(timeout)
+                .onErrorMap(WebClientResponseException.class, e ->
+                        e.getStatusCode().value() == 429 || e.getStatusCode().value() == 503
+                                ? new EngineThrottledException(name(), e)
+                                : e)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Recognition service returned an empty response")))
+                .map(this::toResult);
+    }
+
+    private RecognitionResult toResult(Map<String, Object> body) {
+        if (body.get("error") != null) {
+            throw new IllegalStateException("Recognition service error: " + body.get("error"));
+        }
+
+        Object confidence = body.get("confidence");
+        return new RecognitionResult(
+                String.valueOf(body.get("word")),
+                confidence instanceof Number n ? n.doubleValue() : null,
+                name()
+        );
+    }
+
+    @Override
+    public void warmUp() {
+        djangoClient.get()
+                .uri("/health")
+                .retrieve()
+                .toBodilessEntity()
+                .block(timeout);
+    }
+}
@@ -0,0 +1,10 @@
+package com.lekhsewa.backend.services.recognition;
+
+import reactor.core.publisher.Mono;
+
+// Engines whose upstream call is non-blocking. The reactive upload path subscribes to these
+// directly instead of parking a worker thread on the call.
+public interface ReactiveRecognitionEngine extends RecognitionEngine {
+
+    Mono<RecognitionResult> recognizeReactive(byte[] imageBytes, String contentType);
+}
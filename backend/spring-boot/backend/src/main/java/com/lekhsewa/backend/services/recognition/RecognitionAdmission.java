@@ -0,0 +1,295 @@
+package com.lekhsewa.backend.services.recognition;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Bulkhead in front of every engine call: at most maxConcurrent calls run, at most maxQueued wait,
+// and each engine has a circuit breaker that opens when the upstream starts throttling.
+// Blocking callers wait on the semaphore; async callers wait in a queue of futures that are handed
+// permits as they are released, so they hold no thread while queued.
+@Component
+public class RecognitionAdmission {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitMillis;
+    private final int throttleThreshold;
+    private final long openMillis;
+
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private double avgServiceMillis;
+
+    public RecognitionAdmission(
+            MeterRegistry meterRegistry,
+            @Value("${recognition.admission.max-concurrent:8}") int maxConcurrent,
+            @Value("${recognition.admission.max-queued:32}") int maxQueued,
+            @Value("${recognition.admission.max-wait-ms:5000}") long maxWaitMillis,
+            @Value("${recognition.admission.throttle-threshold:2}") int throttleThreshold,
+            @Value("${recognition.admission.open-ms:30000}") long openMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitMillis = maxWaitMillis;
+        this.throttleThreshold = throttleThreshold;
+        this.openMillis = openMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.avgServiceMillis = 1000;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("recognition.admission.queued", queued, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("recognition.admission.in.flight", this, RecognitionAdmission::inFlight).register(meterRegistry);
+    }
+
+    public <T> T call(String engine, Callable<T> task) throws Exception {
+        Breaker breaker = breakers.computeIfAbsent(engine, name -> new Breaker());
+        boolean probe = false;
+        try {
+            probe = breaker.admit(engine);
+            acquire();
+        } catch (RecognitionRejectedException e) {
+            breaker.complete(probe, "rejected");
+            meterRegistry.counter("recognition.admission.rejected", "engine", engine).increment();
+            throw e;
+        } catch (InterruptedException e) {
+            breaker.complete(probe, "rejected");
+            throw e;
+        }
+
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = task.call();
+            outcome = "success";
+            return result;
+        } catch (EngineThrottledException e) {
+            outcome = "throttled";
+            throw e;
+        } finally {
+            breaker.complete(probe, outcome);
+            release();
+            record(engine, outcome, System.nanoTime() - start);
+        }
+    }
+
+    // Breaker only, no permit: for the sub-calls of an engine that already holds one (the orchestrator),
+    // which would otherwise wait on permits their own callers are holding.
+    public <T> T guarded(String engine, Callable<T> task) throws Exception {
+        Breaker breaker = breakers.computeIfAbsent(engine, name -> new Breaker());
+        boolean probe;
+        try {
+            probe = breaker.admit(engine);
+        } catch (RecognitionRejectedException e) {
+            meterRegistry.counter("recognition.admission.rejected", "engine", engine).increment();
+            throw e;
+        }
+
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = task.call();
+            outcome = "success";
+            return result;
+        } catch (EngineThrottledException e) {
+            outcome = "throttled";
+            throw e;
+        } finally {
+            breaker.complete(probe, outcome);
+            timer(engine, outcome, System.nanoTime() - start);
+        }
+    }
+
+    // Same limits as call, for tasks that return a future. Never blocks: a queued caller gets a
+    // future that completes once a permit frees up, or fails after maxWaitMillis.
+    public <T> CompletableFuture<T> callAsync(String engine, Supplier<CompletableFuture<T>> task) {
+        Breaker breaker = breakers.computeIfAbsent(engine, name -> new Breaker());
+        boolean admittedProbe = false;
+        CompletableFuture<Void> admitted;
+        try {
+            admittedProbe = breaker.admit(engine);
+            admitted = acquireAsync();
+        } catch (RecognitionRejectedException e) {
+            breaker.complete(admittedProbe, "rejected");
+            meterRegistry.counter("recognition.admission.rejected", "engine", engine).increment();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        boolean probe = admittedProbe;
+        return admitted
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        breaker.complete(probe, "rejected");
+                        meterRegistry.counter("recognition.admission.rejected", "engine", engine).increment();
+                    }
+                })
+                .thenCompose(ignored -> {
+                    long start = System.nanoTime();
+                    CompletableFuture<T> running;
+                    try {
+                        running = task.get();
+                    } catch (RuntimeException e) {
+                        running = CompletableFuture.failedFuture(e);
+                    }
+                    return running.whenComplete((result, error) -> {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        String outcome = cause == null ? "success" : cause instanceof EngineThrottledException ? "throttled" : "error";
+                        breaker.complete(probe, outcome);
+                        release();
+                        record(engine, outcome, System.nanoTime() - start);
+                    });
+                });
+    }
+
+    public int queued() {
+        return queued.get();
+    }
+
+    public int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    // Time for the current backlog to drain at the observed service time.
+    public synchronized long retryAfterSeconds() {
+        double waves = (double) (queued.get() + maxConcurrent) / maxConcurrent;
+        return Math.max(1, (long) Math.ceil(waves * avgServiceMillis / 1000));
+    }
+
+    private void acquire() throws InterruptedException {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw new RecognitionRejectedException("Recognition queue is full", retryAfterSeconds());
+        }
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new RecognitionRejectedException("Timed out waiting for a recognition slot", retryAfterSeconds());
+            }
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private CompletableFuture<Void> acquireAsync() {
+        if (permits.tryAcquire()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw new RecognitionRejectedException("Recognition queue is full", retryAfterSeconds());
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiter.orTimeout(maxWaitMillis, TimeUnit.MILLISECONDS).whenComplete((ignored, error) -> {
+            queued.decrementAndGet();
+            if (error != null) {
+                waiters.remove(waiter);
+            }
+        });
+        waiters.add(waiter);
+        // A permit may have been released between the tryAcquire above and joining the queue.
+        handOff();
+        return waiter.handle((ignored, error) -> {
+            if (error != null) {
+                throw new RecognitionRejectedException("Timed out waiting for a recognition slot", retryAfterSeconds());
+            }
+            return null;
+        });
+    }
+
+    private void release() {
+        permits.release();
+        handOff();
+    }
+
+    // Passes free permits to queued async callers; a waiter that already timed out passes its permit on.
+    private void handOff() {
+        while (!waiters.isEmpty() && permits.tryAcquire()) {
+            CompletableFuture<Void> next = waiters.poll();
+            if (next == null || !next.complete(null)) {
+                permits.release();
+            }
+        }
+    }
+
+    private void record(String engine, String outcome, long elapsedNanos) {
+        observe(elapsedNanos / 1_000_000);
+        timer(engine, outcome, elapsedNanos);
+    }
+
+    private void timer(String engine, String outcome, long elapsedNanos) {
+        Timer.builder("recognition.engine")
+                .tag("engine", engine)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void observe(long millis) {
+        avgServiceMillis = avgServiceMillis * 0.8 + millis * 0.2;
+    }
+
+    // Closed -> open after throttleThreshold consecutive throttles. Once openMillis has passed the
+    // breaker is half-open: a single probe call goes through while everyone else is still turned
+    // away, and its outcome either closes the breaker or opens it for another openMillis.
+    private final class Breaker {
+        private int consecutiveThrottles;
+        private long openUntil;
+        private boolean probing;
+
+        // True when the caller is the half-open probe and must report back through complete.
+        synchronized boolean admit(String engine) {
+            if (openUntil == 0) {
+                return false;
+            }
+            long remaining = openUntil - System.currentTimeMillis();
+            if (remaining > 0 || probing) {
+                throw new RecognitionRejectedException(
+                        "Recognition engine " + engine + " is cooling down after upstream throttling",
+                        Math.max(1, (remaining + 999) / 1000));
+            }
+            probing = true;
+            return true;
+        }
+
+        synchronized void complete(boolean probe, String outcome) {
+            switch (outcome) {
+                case "success" -> {
+                    consecutiveThrottles = 0;
+                    if (probe) {
+                        openUntil = 0;
+                    }
+                }
+                case "throttled" -> {
+                    if (probe || ++consecutiveThrottles >= throttleThreshold) {
+                        openUntil = System.currentTimeMillis() + openMillis;
+                        consecutiveThrottles = 0;
+                    }
+                }
+                // The probe never got a verdict from the upstream; the next caller probes instead.
+                default -> { }
+            }
+            if (probe) {
+                probing = false;
+            }
+        }
+    }
+}
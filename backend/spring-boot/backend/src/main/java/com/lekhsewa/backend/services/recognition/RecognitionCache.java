@@ -0,0 +1,72 @@
+package com.lekhsewa.backend.services.recognition;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+@Component
+public class RecognitionCache {
+
+    private final AsyncCache<String, RecognitionResult> cache;
+
+    public RecognitionCache(
+            MeterRegistry meterRegistry,
+            @Value("${recognition.cache.max-size:10000}") long maxSize,
+            @Value("${recognition.cache.ttl-ms:3600000}") long ttlMillis) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "recognition.results");
+        Gauge.builder("recognition.cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+                .register(meterRegistry);
+    }
+
+    // Concurrent callers with the same key share the first caller's in-flight engine call.
+    // Failed calls are dropped from the cache so the next request retries.
+    public RecognitionResult get(String engine, String contentHash, Callable<RecognitionResult> loader) throws Exception {
+        CompletableFuture<RecognitionResult> mine = new CompletableFuture<>();
+        CompletableFuture<RecognitionResult> shared = cache.get(engine + ":" + contentHash, (key, executor) -> mine);
+
+        if (shared == mine) {
+            try {
+                mine.complete(loader.call());
+            } catch (Throwable e) {
+                mine.completeExceptionally(e);
+            }
+        }
+
+        try {
+            return shared.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Non-blocking variant of get: the caller receives the shared future instead of waiting on it.
+    // The loader only has to start the engine call, it runs inside the cache's compute.
+    public CompletableFuture<RecognitionResult> getAsync(String engine, String contentHash, Supplier<CompletableFuture<RecognitionResult>> loader) {
+        return cache.get(engine + ":" + contentHash, (key, executor) -> {
+            try {
+                return loader.get();
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,27 @@
+package com.lekhsewa.backend.services.recognition;
+
+public interface RecognitionEngine {
+
+    String name();
+
+    RecognitionResult recognize(byte[] imageBytes, String contentType) throws Exception;
+
+    default void warmUp() throws Exception {
+    }
+
+    // Square edge length the canvas is downscaled to before recognition, 0 keeps the cropped size.
+    default int targetSize() {
+        return 0;
+    }
+
+    // True for engines that delegate to other engines and prepare each one's input themselves,
+    // so they must be handed the stored bytes untouched.
+    default boolean preparesOwnInput() {
+        return false;
+    }
+
+    // True for engines that run on this machine's CPU instead of calling an upstream service.
+    default boolean inProcess() {
+        return false;
+    }
+}
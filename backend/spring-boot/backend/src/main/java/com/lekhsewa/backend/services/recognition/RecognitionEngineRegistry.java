@@ -0,0 +1,67 @@
+package com.lekhsewa.backend.services.recognition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Slf4j
+@Component
+public class RecognitionEngineRegistry {
+
+    private final Map<String, RecognitionEngine> engines = new LinkedHashMap<>();
+    private final String activeName;
+    private final boolean warmUp;
+
+    public RecognitionEngineRegistry(
+            List<RecognitionEngine> engines,
+            @Value("${recognition.engine:gemini}") String activeName,
+            @Value("${recognition.warm-up:true}") boolean warmUp) {
+        for (RecognitionEngine engine : engines) {
+            this.engines.put(engine.name(), engine);
+        }
+        if (!this.engines.containsKey(activeName)) {
+            throw new IllegalStateException("Recognition engine '" + activeName + "' is not enabled, available: " + this.engines.keySet());
+        }
+        this.activeName = activeName;
+        this.warmUp = warmUp;
+    }
+
+    public RecognitionEngine active() {
+        return engines.get(activeName);
+    }
+
+    public RecognitionEngine get(String name) {
+        RecognitionEngine engine = engines.get(name);
+        if (engine == null) {
+            throw new IllegalArgumentException("Unknown recognition engine: " + name);
+        }
+        return engine;
+    }
+
+    public Set<String> names() {
+        return engines.keySet();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpEngines() {
+        if (!warmUp) {
+            return;
+        }
+        for (RecognitionEngine engine : engines.values()) {
+            long start = System.nanoTime();
+            try {
+                engine.warmUp();
+                log.info("Recognition engine {} warmed up in {} ms", engine.name(), (System.nanoTime() - start) / 1_000_000);
+            } catch (Exception e) {
+                log.warn("Recognition engine {} warm-up failed: {}", engine.name(), e.getMessage());
+            }
+        }
+    }
+}
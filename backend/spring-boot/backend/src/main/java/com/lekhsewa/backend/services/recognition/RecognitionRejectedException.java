@@ -0,0 +1,14 @@
+package com.lekhsewa.backend.services.recognition;
+
+import lombok.Getter;
+
+@Getter
+public class RecognitionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RecognitionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
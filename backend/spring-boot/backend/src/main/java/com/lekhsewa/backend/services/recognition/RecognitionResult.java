@@ -0,0 +1,32 @@
+package com.lekhsewa.backend.services.recognition;
+
+import java.util.List;
+
+// reason says why this engine's answer was used; only set by engines that choose between others.
+public record RecognitionResult(
+        String word,
+        Double confidence,
+        String engine,
+        List<Candidate> candidates,
+        String reason
+) {
+
+    public RecognitionResult(String word, Double confidence, String engine) {
+        this(word, confidence, engine, List.of(), null);
+    }
+
+    public RecognitionResult(String word, Double confidence, String engine, List<Candidate> candidates) {
+        this(word, confidence, engine, candidates, null);
+    }
+
+    public RecognitionResult withReason(String reason) {
+        return new RecognitionResult(word, confidence, engine, candidates, reason);
+    }
+
+    // Engines answer "Not Recognized.Try Again." (or similar) rather than failing when they cannot read the canvas.
+    public boolean unrecognized() {
+        return word == null || word.isBlank() || word.toLowerCase().contains("not recognized");
+    }
+
+    public record Candidate(String character, double confidence) {}
+}
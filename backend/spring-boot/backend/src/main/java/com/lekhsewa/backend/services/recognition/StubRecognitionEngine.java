@@ -0,0 +1,32 @@
+package com.lekhsewa.backend.services.recognition;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class StubRecognitionEngine implements RecognitionEngine {
+
+    private final String word;
+
+    public StubRecognitionEngine(@Value("${recognition.stub.word:क}") String word) {
+        this.word = word;
+    }
+
+    @Override
+    public String name() {
+        return "stub";
+    }
+
+    @Override
+    public boolean inProcess() {
+        return true;
+    }
+
+    @Override
+    public RecognitionResult recognize(byte[] imageBytes, String contentType) {
+        if (imageBytes == null || imageBytes.length == 0) {
+            throw new IllegalArgumentException("File bytes are empty");
+        }
+        return new RecognitionResult(word, 1.0, name());
+    }
+}
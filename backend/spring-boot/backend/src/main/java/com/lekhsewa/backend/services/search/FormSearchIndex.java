@@ -0,0 +1,197 @@
+package com.lekhsewa.backend.services.search;
+
+import com.lekhsewa.backend.DTO.FormSummary;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Immutable snapshot of the form catalogue. Every name is indexed under two precomputed keys: its
+// normalized text and a phonetic romanized fold (see NepaliText). Trigrams of both keys feed one
+// posting list used to pick candidates, which are then scored and returned best match first.
+public final class FormSearchIndex {
+
+    public static final FormSearchIndex EMPTY = build(List.of());
+
+    private static final int EXACT = 100;
+    private static final int PREFIX = 90;
+    private static final int WORD_PREFIX = 80;
+    private static final int CONTAINS = 70;
+    private static final int FOLD_PREFIX = 60;
+    private static final int FOLD_CONTAINS = 50;
+    private static final int FUZZY = 40;
+
+    private final FormSummary[] forms;
+    private final String[] keys;
+    private final String[] folds;
+    private final int[] foldOrder;
+    private final Map<String, int[]> postings;
+
+    private FormSearchIndex(FormSummary[] forms, String[] keys, String[] folds, int[] foldOrder, Map<String, int[]> postings) {
+        this.forms = forms;
+        this.keys = keys;
+        this.folds = folds;
+        this.foldOrder = foldOrder;
+        this.postings = postings;
+    }
+
+    public static FormSearchIndex build(Collection<FormSummary> summaries) {
+        FormSummary[] forms = summaries.stream()
+                .sorted(Comparator.comparing((FormSummary f) -> NepaliText.normalize(f.name())).thenComparing(FormSummary::id))
+                .toArray(FormSummary[]::new);
+
+        String[] keys = new String[forms.length];
+        String[] folds = new String[forms.length];
+        Map<String, Set<Integer>> building = new HashMap<>();
+        for (int i = 0; i < forms.length; i++) {
+            keys[i] = NepaliText.normalize(forms[i].name());
+            folds[i] = NepaliText.fold(keys[i]);
+            for (String gram : trigrams(keys[i])) {
+                building.computeIfAbsent(gram, g -> new TreeSet<>()).add(i);
+            }
+            for (String gram : trigrams(folds[i])) {
+                building.computeIfAbsent(gram, g -> new TreeSet<>()).add(i);
+            }
+        }
+
+        Map<String, int[]> postings = new HashMap<>(building.size() * 2);
+        building.forEach((gram, set) -> postings.put(gram, set.stream().mapToInt(Integer::intValue).toArray()));
+
+        int[] foldOrder = IntStream.range(0, forms.length)
+                .boxed()
+                .sorted(Comparator.comparing((Integer i) -> folds[i]).thenComparing(i -> i))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        return new FormSearchIndex(forms, keys, folds, foldOrder, postings);
+    }
+
+    public int size() {
+        return forms.length;
+    }
+
+    // Matching forms in Hit.ORDER: most relevant first, ties broken by name and id.
+    public List<Hit> search(String q) {
+        String key = NepaliText.normalize(q);
+        List<Hit> hits = new ArrayList<>();
+        if (key.isEmpty()) {
+            for (int i = 0; i < forms.length; i++) {
+                hits.add(new Hit(forms[i], 0, keys[i]));
+            }
+            return hits;
+        }
+        String fold = NepaliText.fold(key);
+
+        for (int i : candidates(key, fold)) {
+            int score = score(i, key, fold);
+            if (score > 0) {
+                hits.add(new Hit(forms[i], score, keys[i]));
+            }
+        }
+        hits.sort(Hit.ORDER);
+        return hits;
+    }
+
+    public List<FormSummary> prefix(String q, int limit) {
+        String key = NepaliText.normalize(q);
+        String fold = NepaliText.fold(key);
+        LinkedHashSet<FormSummary> out = new LinkedHashSet<>();
+
+        for (int i = lowerBound(keys, null, key); i < keys.length && out.size() < limit && keys[i].startsWith(key); i++) {
+            out.add(forms[i]);
+        }
+        if (!fold.isEmpty()) {
+            for (int j = lowerBound(folds, foldOrder, fold); j < foldOrder.length && out.size() < limit && folds[foldOrder[j]].startsWith(fold); j++) {
+                out.add(forms[foldOrder[j]]);
+            }
+        }
+        return new ArrayList<>(out);
+    }
+
+    private Collection<Integer> candidates(String key, String fold) {
+        if (key.length() < 3 && fold.length() < 3) {
+            List<Integer> all = new ArrayList<>(forms.length);
+            for (int i = 0; i < forms.length; i++) all.add(i);
+            return all;
+        }
+        Set<Integer> out = new HashSet<>();
+        for (String gram : trigrams(key)) addPostings(gram, out);
+        for (String gram : trigrams(fold)) addPostings(gram, out);
+        return out;
+    }
+
+    private void addPostings(String gram, Set<Integer> out) {
+        int[] list = postings.get(gram);
+        if (list != null) {
+            for (int i : list) out.add(i);
+        }
+    }
+
+    private int score(int i, String key, String fold) {
+        String name = keys[i];
+        if (name.equals(key)) return EXACT;
+        if (name.startsWith(key)) return PREFIX;
+        if (name.contains(" " + key)) return WORD_PREFIX;
+        if (name.contains(key)) return CONTAINS;
+        if (fold.isEmpty()) return 0;
+        if (folds[i].startsWith(fold)) return FOLD_PREFIX;
+        if (folds[i].contains(fold)) return FOLD_CONTAINS;
+        if (fold.length() < 3) return 0;
+
+        int maxEdits = fold.length() <= 4 ? 1 : 2;
+        int distance = substringDistance(fold, folds[i]);
+        return distance <= maxEdits ? FUZZY - distance * 10 : 0;
+    }
+
+    // Smallest edit distance between the needle and any substring of the text.
+    static int substringDistance(String needle, String text) {
+        int m = needle.length();
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+
+        int best = prev[m];
+        for (int t = 1; t <= text.length(); t++) {
+            curr[0] = 0;
+            for (int j = 1; j <= m; j++) {
+                int cost = needle.charAt(j - 1) == text.charAt(t - 1) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            best = Math.min(best, curr[m]);
+            if (best == 0) return 0;
+            int[] swap = prev;
+            prev = curr;
+            curr = swap;
+        }
+        return best;
+    }
+
+    private static int lowerBound(String[] values, int[] order, String needle) {
+        int lo = 0;
+        int hi = order == null ? values.length : order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            String v = order == null ? values[mid] : values[order[mid]];
+            if (v.compareTo(needle) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public record Hit(FormSummary form, int score, String key) {
+
+        public static final Comparator<Hit> ORDER = Comparator.comparingInt((Hit h) -> -h.score())
+                .thenComparing(Hit::key)
+                .thenComparing(h -> h.form().id());
+    }
+
+    private static Set<String> trigrams(String s) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            grams.add(s.substring(i, i + 3));
+        }
+        return grams;
+    }
+}
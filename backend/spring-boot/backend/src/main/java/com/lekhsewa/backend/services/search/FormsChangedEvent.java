@@ -0,0 +1,3 @@
+package com.lekhsewa.backend.services.search;
+
+public record FormsChangedEvent() {}
@@ -0,0 +1,128 @@
+package com.lekhsewa.backend.services.search;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Search keys for form names typed either in Devanagari or in romanized Nepali.
+public final class NepaliText {
+
+    private static final char HALANT = '्';
+    private static final char NUKTA = '़';
+    private static final Map<Character, String> CONSONANTS = new HashMap<>();
+    private static final Map<Character, String> VOWELS = new HashMap<>();
+    private static final Map<Character, String> MATRAS = new HashMap<>();
+    private static final Map<Character, String> SIGNS = new HashMap<>();
+
+    static {
+        String[][] consonants = {
+                {"क", "k"}, {"ख", "kh"}, {"ग", "g"}, {"घ", "gh"}, {"ङ", "ng"},
+                {"च", "ch"}, {"छ", "chh"}, {"ज", "j"}, {"झ", "jh"}, {"ञ", "ny"},
+                {"ट", "t"}, {"ठ", "th"}, {"ड", "d"}, {"ढ", "dh"}, {"ण", "n"},
+                {"त", "t"}, {"थ", "th"}, {"द", "d"}, {"ध", "dh"}, {"न", "n"},
+                {"प", "p"}, {"फ", "ph"}, {"ब", "b"}, {"भ", "bh"}, {"म", "m"},
+                {"य", "y"}, {"र", "r"}, {"ल", "l"}, {"व", "v"}, {"श", "sh"},
+                {"ष", "sh"}, {"स", "s"}, {"ह", "h"}
+        };
+        String[][] vowels = {
+                {"अ", "a"}, {"आ", "aa"}, {"इ", "i"}, {"ई", "ii"}, {"उ", "u"}, {"ऊ", "uu"},
+                {"ऋ", "ri"}, {"ए", "e"}, {"ऐ", "ai"}, {"ओ", "o"}, {"औ", "au"}
+        };
+        String[][] matras = {
+                {"ा", "aa"}, {"ि", "i"}, {"ी", "ii"}, {"ु", "u"}, {"ू", "uu"},
+                {"ृ", "ri"}, {"े", "e"}, {"ै", "ai"}, {"ो", "o"}, {"ौ", "au"}
+        };
+        String[][] signs = {
+                {"ं", "n"}, {"ँ", "n"}, {"ः", "h"}, {"़", ""}, {"।", " "},
+                {"०", "0"}, {"१", "1"}, {"२", "2"}, {"३", "3"}, {"४", "4"},
+                {"५", "5"}, {"६", "6"}, {"७", "7"}, {"८", "8"}, {"९", "9"}
+        };
+        for (String[] c : consonants) CONSONANTS.put(c[0].charAt(0), c[1]);
+        for (String[] v : vowels) VOWELS.put(v[0].charAt(0), v[1]);
+        for (String[] m : matras) MATRAS.put(m[0].charAt(0), m[1]);
+        for (String[] s : signs) SIGNS.put(s[0].charAt(0), s[1]);
+    }
+
+    private NepaliText() {
+    }
+
+    // NFC, lower case, joiners removed and whitespace collapsed.
+    public static String normalize(String s) {
+        if (s == null) {
+            return "";
+        }
+        String nfc = Normalizer.normalize(s, Normalizer.Form.NFC)
+                .replace("\u200C", "")
+                .replace("\u200D", "");
+        return nfc.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+
+    public static String transliterate(String s) {
+        StringBuilder out = new StringBuilder(s.length() * 2);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String consonant = CONSONANTS.get(c);
+            if (consonant != null) {
+                out.append(consonant);
+                // A nukta only modifies the consonant, the matra or halant comes after it.
+                while (i + 1 < s.length() && s.charAt(i + 1) == NUKTA) {
+                    i++;
+                }
+                char next = i + 1 < s.length() ? s.charAt(i + 1) : 0;
+                String matra = MATRAS.get(next);
+                if (matra != null) {
+                    out.append(matra);
+                    i++;
+                } else if (next == HALANT) {
+                    i++;
+                } else {
+                    out.append('a');
+                }
+                continue;
+            }
+            String mapped = VOWELS.containsKey(c) ? VOWELS.get(c)
+                    : MATRAS.containsKey(c) ? MATRAS.get(c)
+                    : SIGNS.get(c);
+            if (mapped != null) {
+                out.append(mapped);
+            } else if (c != HALANT) {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    // Loose phonetic key so "nagarikta", "naagarikataa" and "नागरिकता" collide: aspirates and long
+    // vowels are folded, the inherent 'a' is dropped after a word's first letter and repeats collapse.
+    public static String fold(String normalized) {
+        String s = transliterate(normalized)
+                .replace("chh", "ch")
+                .replace("sh", "s")
+                .replace("ph", "f")
+                .replace("kh", "k").replace("gh", "g").replace("jh", "j")
+                .replace("th", "t").replace("dh", "d").replace("bh", "b")
+                .replace("ee", "i").replace("ii", "i")
+                .replace("oo", "u").replace("uu", "u")
+                .replace('w', 'v');
+
+        StringBuilder out = new StringBuilder(s.length());
+        boolean wordStart = true;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+                    out.append(' ');
+                }
+                wordStart = true;
+                continue;
+            }
+            boolean dropped = c == 'a' && !wordStart;
+            if (!dropped && (out.length() == 0 || out.charAt(out.length() - 1) != c)) {
+                out.append(c);
+            }
+            wordStart = false;
+        }
+        return out.toString().trim();
+    }
+}
@@ -0,0 +1,6 @@
+package com.lekhsewa.backend.services.storage;
+
+public record BlobRef(
+        String hash,
+        long size
+) {}
@@ -0,0 +1,15 @@
+package com.lekhsewa.backend.services.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface BlobStore {
+
+    BlobRef put(InputStream in) throws IOException;
+
+    BlobRef put(byte[] bytes) throws IOException;
+
+    byte[] read(String hash) throws IOException;
+
+    boolean exists(String hash);
+}
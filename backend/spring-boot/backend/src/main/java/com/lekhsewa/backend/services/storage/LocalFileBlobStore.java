@@ -0,0 +1,115 @@
+package com.lekhsewa.backend.services.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Blobs live at <root>/<hash[0..2]>/<hash[2..4]>/<hash>, so identical images are stored once.
+@Component
+public class LocalFileBlobStore implements BlobStore {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final Path tmp;
+
+    public LocalFileBlobStore(@Value("${storage.blob.root:data/blobs}") Path root) throws IOException {
+        this.root = root;
+        this.tmp = Files.createDirectories(root.resolve("tmp"));
+    }
+
+    @Override
+    public BlobRef put(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(tmp, "upload-", ".part");
+        long size = 0;
+
+        try {
+            try (ReadableByteChannel source = Channels.newChannel(in);
+                 FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while (buffer.hasRemaining()) {
+                        size += target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            commit(temp, pathFor(hash));
+            return new BlobRef(hash, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public BlobRef put(byte[] bytes) throws IOException {
+        return put(new ByteArrayInputStream(bytes));
+    }
+
+    @Override
+    public byte[] read(String hash) throws IOException {
+        try (FileChannel channel = FileChannel.open(pathFor(hash), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Blob too large: " + hash);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // keep reading until the buffer is full
+            }
+            return buffer.array();
+        }
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.exists(pathFor(hash));
+    }
+
+    private void commit(Path temp, Path target) throws IOException {
+        if (Files.exists(target)) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Another upload of the same content won the race.
+        }
+    }
+
+    private Path pathFor(String hash) {
+        if (hash == null || hash.length() != 64 || !hash.chars().allMatch(HexFormat::isHexDigit)) {
+            throw new IllegalArgumentException("Invalid blob hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Hashing failed", e);
+        }
+    }
+}
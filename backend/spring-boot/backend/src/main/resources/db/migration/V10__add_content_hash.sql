@@ -0,0 +1,6 @@
+ALTER TABLE canvas_image
+    ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_canvas_image_content_hash
+    ON canvas_image (content_hash)
+    WHERE content_hash IS NOT NULL;
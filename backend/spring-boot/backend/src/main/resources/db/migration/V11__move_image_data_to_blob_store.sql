@@ -0,0 +1,5 @@
+ALTER TABLE canvas_image
+    ALTER COLUMN image_data DROP NOT NULL;
+
+ALTER TABLE canvas_image
+    ADD COLUMN IF NOT EXISTS size_bytes BIGINT;
@@ -0,0 +1 @@
+CREATE INDEX IF NOT EXISTS idx_message_created_at_id ON message (created_at DESC, id DESC);
@@ -0,0 +1,32 @@
+CREATE TABLE IF NOT EXISTS recognition_job (
+    id              VARCHAR(36) PRIMARY KEY,
+    auth0_sub       VARCHAR(255) NOT NULL,
+    content_hash    VARCHAR(64)  NOT NULL,
+    content_type    VARCHAR(255) NOT NULL,
+    size_bytes      BIGINT       NOT NULL,
+    state           VARCHAR(16)  NOT NULL DEFAULT 'QUEUED',
+    attempts        INT          NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    locked_by       VARCHAR(128),
+    locked_until    TIMESTAMPTZ,
+    word            TEXT,
+    confidence      DOUBLE PRECISION,
+    engine          VARCHAR(32),
+    error           TEXT,
+    created_at      TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    updated_at      TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    CONSTRAINT chk_recognition_job_state CHECK (state IN ('QUEUED', 'RUNNING', 'DONE', 'FAILED'))
+);
+
+-- Claim scans: due queued jobs, and running jobs whose lease has expired.
+CREATE INDEX IF NOT EXISTS idx_recognition_job_due
+    ON recognition_job (next_attempt_at)
+    WHERE state = 'QUEUED';
+
+CREATE INDEX IF NOT EXISTS idx_recognition_job_lease
+    ON recognition_job (locked_until)
+    WHERE state = 'RUNNING';
+
+CREATE INDEX IF NOT EXISTS idx_recognition_job_finished
+    ON recognition_job (updated_at)
+    WHERE state IN ('DONE', 'FAILED');
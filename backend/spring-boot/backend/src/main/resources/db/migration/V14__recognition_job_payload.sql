@@ -0,0 +1,3 @@
+-- The normalized canvas travels with the job so whichever instance claims it can run it; the blob
+-- store is local to the instance that took the upload. Cleared once the job finishes.
+ALTER TABLE recognition_job ADD COLUMN IF NOT EXISTS payload BYTEA;
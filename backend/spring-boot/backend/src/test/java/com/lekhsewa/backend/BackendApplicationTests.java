@@ -3,7 +3,7 @@ package com.lekhsewa.backend;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {"recognition.engine=stub", "recognition.gemini.enabled=false"})
 class BackendApplicationTests {
 
     @Test
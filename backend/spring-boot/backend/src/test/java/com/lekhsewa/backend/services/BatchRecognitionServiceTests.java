@@ -0,0 +1,127 @@
+package com.lekhsewa.backend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lekhsewa.backend.services.preprocessing.PngHeaderValidator;
+import com.lekhsewa.backend.services.recognition.RecognitionResult;
+import com.lekhsewa.backend.services.storage.BlobRef;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BatchRecognitionServiceTests {
+
+    private final CanvasImageService canvasImageService = mock(CanvasImageService.class);
+    private final UserServices userServices = mock(UserServices.class);
+
+    @Test
+    void pngEntriesAreReadAndOtherEntriesSkipped() throws IOException {
+        byte[] zip = zip(new Entry("a.png", png()), new Entry("notes.txt", new byte[100]), new Entry("b/c.PNG", png()));
+
+        List<BatchRecognitionService.Item> items = service(8, 1 << 20, 4, null).read(List.of(archive(zip)));
+
+        assertThat(items).extracting(BatchRecognitionService.Item::name).containsExactly("a.png", "b/c.PNG");
+        assertThat(items).allSatisfy(item -> assertThat(item.error()).isNull());
+    }
+
+    @Test
+    void everyEntryCountsAgainstTheEntryLimit() throws IOException {
+        Entry[] entries = new Entry[9];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Entry("junk-" + i + ".txt", new byte[1]);
+        }
+
+        assertThatThrownBy(() -> service(8, 1 << 20, 4, null).read(List.of(archive(zip(entries)))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("entries");
+    }
+
+    @Test
+    void skippedBytesCountAgainstTheInflatedLimit() throws IOException {
+        // Compresses to a few KB, inflates to 4 MB.
+        byte[] zip = zip(new Entry("padding.bin", new byte[4 << 20]));
+
+        assertThatThrownBy(() -> service(8, 1 << 20, 4, null).read(List.of(archive(zip))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("expands");
+    }
+
+    @Test
+    void oneBatchKeepsAtMostMaxInFlightImagesOnTheExecutor() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        when(canvasImageService.storeCanvas(any(byte[].class))).thenAnswer(invocation ->
+                new CanvasImageService.StoredCanvas(new BlobRef("hash", 1), invocation.getArgument(0)));
+        when(canvasImageService.recognize(any(), anyString(), anyString())).thenAnswer(invocation -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(30);
+            running.decrementAndGet();
+            return new RecognitionResult("क", 0.9, "stub");
+        });
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+        try {
+            List<BatchRecognitionService.Item> items = IntStream.range(0, 12)
+                    .mapToObj(i -> new BatchRecognitionService.Item(i, i + ".png", png(), null))
+                    .toList();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            service(64, 1 << 20, 2, executor).recognizeAndStream(items, "sub", out);
+
+            assertThat(out.toString(StandardCharsets.UTF_8).lines()).hasSize(12).allSatisfy(line -> assertThat(line).contains("क"));
+            assertThat(peak.get()).isBetween(1, 2);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private BatchRecognitionService service(int maxEntries, long maxInflatedBytes, int maxInFlight, ThreadPoolTaskExecutor executor) {
+        return new BatchRecognitionService(canvasImageService, userServices, new PngHeaderValidator(2 << 20, 4096, 4_000_000),
+                executor, new ObjectMapper(), 64, 2 << 20, maxEntries, maxInflatedBytes, maxInFlight);
+    }
+
+    // Signature and IHDR only; the validator never looks past the header.
+    private static byte[] png() {
+        ByteBuffer png = ByteBuffer.allocate(33);
+        png.put(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        png.putInt(13).put("IHDR".getBytes(StandardCharsets.US_ASCII));
+        png.putInt(64).putInt(64).put((byte) 8).put((byte) 0);
+        return png.array();
+    }
+
+    private record Entry(String name, byte[] bytes) {}
+
+    private static byte[] zip(Entry... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Entry entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry.name()));
+                zip.write(entry.bytes());
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static MockMultipartFile archive(byte[] zip) {
+        return new MockMultipartFile("files", "batch.zip", "application/zip", zip);
+    }
+}
@@ -0,0 +1,72 @@
+package com.lekhsewa.backend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lekhsewa.backend.model.Form;
+import com.lekhsewa.backend.repository.FormFieldRepository;
+import com.lekhsewa.backend.repository.FormRepository;
+import com.lekhsewa.backend.services.search.FormsChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FormDefinitionCacheTests {
+
+    private final FormRepository repo = mock(FormRepository.class);
+    private final FormFieldRepository fieldRepo = mock(FormFieldRepository.class);
+    private final FormService formService = new FormService(repo, fieldRepo, this::deliver);
+    private final FormDefinitionCache cache = new FormDefinitionCache(formService, new ObjectMapper(), new SimpleMeterRegistry(), 100, 1024);
+
+    @Test
+    void formChangedOutsideTheAppIsPickedUpByTheNextCheck() {
+        when(repo.findAllSummaries()).thenReturn(List.of());
+        when(repo.catalogueFingerprint()).thenReturn("a");
+        when(repo.findGraphById(1L)).thenReturn(Optional.of(form("Old name")));
+        formService.refreshIndex();
+        FormDefinitionCache.CachedForm before = cache.get(1L);
+
+        // Edited directly in the database: no entity listener fires.
+        when(repo.catalogueFingerprint()).thenReturn("b");
+        when(repo.findGraphById(1L)).thenReturn(Optional.of(form("New name")));
+        formService.checkForChanges();
+        FormDefinitionCache.CachedForm after = cache.get(1L);
+
+        assertThat(new String(after.json(), StandardCharsets.UTF_8)).contains("New name");
+        assertThat(after.etag()).isNotEqualTo(before.etag());
+    }
+
+    @Test
+    void unchangedCatalogueKeepsTheCachedBytes() {
+        when(repo.findAllSummaries()).thenReturn(List.of());
+        when(repo.catalogueFingerprint()).thenReturn("a");
+        when(repo.findGraphById(1L)).thenReturn(Optional.of(form("Name")));
+        formService.refreshIndex();
+        FormDefinitionCache.CachedForm before = cache.get(1L);
+
+        formService.checkForChanges();
+
+        assertThat(cache.get(1L)).isSameAs(before);
+        verify(repo, times(1)).findGraphById(1L);
+    }
+
+    // Delivers events the way the application context does, to the index and the cache.
+    private void deliver(Object event) {
+        formService.onFormsChanged((FormsChangedEvent) event);
+        cache.onFormsChanged((FormsChangedEvent) event);
+    }
+
+    private static Form form(String name) {
+        Form form = new Form();
+        form.setId(1L);
+        form.setName(name);
+        return form;
+    }
+}
@@ -0,0 +1,101 @@
+package com.lekhsewa.backend.services;
+
+import com.lekhsewa.backend.DTO.FormDataCombinedDTO;
+import com.lekhsewa.backend.model.FieldOption;
+import com.lekhsewa.backend.model.Form;
+import com.lekhsewa.backend.model.FormField;
+import com.lekhsewa.backend.repository.FormRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"recognition.engine=stub", "recognition.gemini.enabled=false"})
+@Transactional
+class FormServiceTests {
+
+    @Autowired
+    private FormService formService;
+
+    @Autowired
+    private FormRepository formRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Runs in the test transaction, which is rolled back: nothing is left behind in the database DB_URL points to.
+    @Test
+    void getFormLoadsFieldsAndOptionsInTwoStatements() {
+        Long id = formRepository.save(sampleForm(12, 4)).getId();
+        entityManager.flush();
+        entityManager.clear();
+        StatementCounter.reset();
+
+        FormDataCombinedDTO form = formService.getForm(id);
+
+        int statements = StatementCounter.count();
+        assertThat(form.fields()).hasSize(12);
+        assertThat(form.fields()).allSatisfy(field -> assertThat(field.options()).hasSize(4));
+        assertThat(statements).isLessThanOrEqualTo(2);
+    }
+
+    private static Form sampleForm(int fieldCount, int optionCount) {
+        Form form = new Form();
+        form.setName("Statement count test form");
+        for (int i = 0; i < fieldCount; i++) {
+            FormField field = new FormField();
+            field.setForm(form);
+            field.setLabel("Field " + i);
+            field.setFieldName("field_" + i);
+            field.setType("select");
+            for (int j = 0; j < optionCount; j++) {
+                FieldOption option = new FieldOption();
+                option.setField(field);
+                option.setValue("v" + j);
+                option.setLabel("Option " + j);
+                field.getOptions().add(option);
+            }
+            form.getFields().add(field);
+        }
+        return form;
+    }
+
+    @TestConfiguration
+    static class StatementCounterConfig {
+
+        @Bean
+        HibernatePropertiesCustomizer statementCounter() {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new StatementCounter());
+        }
+    }
+
+    // Counts per thread, so scheduled jobs running in the same context (job polling, index refresh)
+    // do not leak into the assertion the way global Hibernate statistics did.
+    static final class StatementCounter implements StatementInspector {
+
+        private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+        static void reset() {
+            COUNT.get()[0] = 0;
+        }
+
+        static int count() {
+            return COUNT.get()[0];
+        }
+
+        @Override
+        public String inspect(String sql) {
+            COUNT.get()[0]++;
+            return sql;
+        }
+    }
+}
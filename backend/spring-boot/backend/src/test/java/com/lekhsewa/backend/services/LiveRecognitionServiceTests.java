@@ -0,0 +1,173 @@
+package com.lekhsewa.backend.services;
+
+import com.lekhsewa.backend.model.CanvasImage;
+import com.lekhsewa.backend.services.preprocessing.StrokeRasterizer;
+import com.lekhsewa.backend.services.recognition.EngineInputPreparer;
+import com.lekhsewa.backend.services.recognition.RecognitionEngine;
+import com.lekhsewa.backend.services.recognition.RecognitionEngineRegistry;
+import com.lekhsewa.backend.services.recognition.RecognitionResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LiveRecognitionServiceTests {
+
+    private final StrokeRasterizer strokeRasterizer = new StrokeRasterizer(65536, 4096, 20000, 64, 10);
+    private final CanvasImageService canvasImageService = mock(CanvasImageService.class);
+    private final UserServices userServices = mock(UserServices.class);
+    private final BlockingQueue<Map<String, Object>> messages = new LinkedBlockingQueue<>();
+    private final List<Runnable> cleanup = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        cleanup.forEach(Runnable::run);
+    }
+
+    @Test
+    void guessWaitsForAPauseInDrawing() throws Exception {
+        StubEngine engine = new StubEngine(true);
+        LiveRecognitionService.Session session = open(engine, executor(), 100);
+
+        session.penDown(10, 10, 0);
+        for (int i = 1; i <= 15; i++) {
+            session.move(new int[]{10 + i, 10 + i, i * 20});
+            Thread.sleep(20);
+        }
+        assertThat(messages).isEmpty();
+
+        Map<String, Object> guess = messages.poll(2, TimeUnit.SECONDS);
+        assertThat(guess).containsEntry("type", "provisional").containsEntry("version", 16L);
+        assertThat(engine.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void guessForAnOutdatedDrawingIsDroppedAndRedone() throws Exception {
+        StubEngine engine = new StubEngine(true);
+        engine.gate = new CountDownLatch(1);
+        LiveRecognitionService.Session session = open(engine, executor(), 20);
+
+        session.penDown(10, 10, 0);
+        assertThat(engine.entered.await(2, TimeUnit.SECONDS)).isTrue();
+        session.move(new int[]{11, 11, 5, 12, 12, 10});
+        engine.gate.countDown();
+
+        Map<String, Object> guess = messages.poll(2, TimeUnit.SECONDS);
+        assertThat(guess).containsEntry("type", "provisional").containsEntry("version", 3L);
+        assertThat(engine.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void commitChargesOnceAndClearsTheDrawing() throws Exception {
+        CanvasImage image = new CanvasImage();
+        image.setContentType(StrokeRasterizer.CONTENT_TYPE);
+        image.setContentHash("hash");
+        when(userServices.isUserAbleToProcessMoreImage("sub")).thenReturn(true);
+        when(canvasImageService.saveStrokes(any())).thenReturn(image);
+        when(canvasImageService.recognize(any(), anyString(), anyString())).thenReturn(new RecognitionResult("क", 0.9, "stub"));
+        LiveRecognitionService.Session session = open(new StubEngine(true), executor(), 10_000);
+
+        session.penDown(10, 10, 0);
+        session.move(new int[]{20, 20, 16});
+        session.commit();
+        Map<String, Object> committed = messages.poll(2, TimeUnit.SECONDS);
+        session.commit();
+
+        assertThat(committed).containsEntry("type", "committed").containsEntry("word", "क");
+        assertThat(messages.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        verify(userServices, times(1)).isUserAbleToProcessMoreImage("sub");
+    }
+
+    @Test
+    void remoteProvisionalEngineIsNeverCalled() throws Exception {
+        StubEngine engine = new StubEngine(false);
+        LiveRecognitionService.Session session = open(engine, executor(), 20);
+
+        session.penDown(10, 10, 0);
+        session.move(new int[]{20, 20, 16});
+
+        assertThat(messages.poll(300, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(engine.calls.get()).isZero();
+    }
+
+    @Test
+    void droppedGuessIsNotReportedAsServerBusy() throws Exception {
+        Executor full = task -> {
+            throw new RejectedExecutionException("full");
+        };
+        LiveRecognitionService.Session session = open(new StubEngine(true), full, 20);
+
+        session.penDown(10, 10, 0);
+
+        assertThat(messages.poll(300, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    private LiveRecognitionService.Session open(StubEngine engine, Executor provisionalExecutor, long debounceMillis) {
+        ThreadPoolTaskExecutor recognitionExecutor = executor();
+        RecognitionEngineRegistry registry = new RecognitionEngineRegistry(List.of(engine), "stub", false);
+        LiveRecognitionService service = new LiveRecognitionService(canvasImageService, strokeRasterizer, userServices, registry,
+                new EngineInputPreparer(null, strokeRasterizer), recognitionExecutor, provisionalExecutor,
+                "stub", debounceMillis, 10_000, 20000);
+        cleanup.add(service::shutdown);
+        return service.open("sub", 100, 100, 4, messages::add);
+    }
+
+    private ThreadPoolTaskExecutor executor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.initialize();
+        cleanup.add(executor::shutdown);
+        return executor;
+    }
+
+    private static final class StubEngine implements RecognitionEngine {
+        private final boolean inProcess;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private volatile CountDownLatch gate;
+
+        StubEngine(boolean inProcess) {
+            this.inProcess = inProcess;
+        }
+
+        @Override
+        public String name() {
+            return "stub";
+        }
+
+        @Override
+        public boolean inProcess() {
+            return inProcess;
+        }
+
+        @Override
+        public RecognitionResult recognize(byte[] imageBytes, String contentType) throws Exception {
+            calls.incrementAndGet();
+            entered.countDown();
+            CountDownLatch waitFor = gate;
+            if (waitFor != null) {
+                gate = null;
+                waitFor.await(2, TimeUnit.SECONDS);
+            }
+            return new RecognitionResult("क", 0.9, name());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.lekhsewa.backend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class MessageIngestBufferTests {
+
+    @Test
+    void messagesSpooledDuringAnOutageAreWrittenOnceTheDatabaseIsBack() throws Exception {
+        AtomicBoolean down = new AtomicBoolean(true);
+        AtomicInteger rows = new AtomicInteger();
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            if (down.get()) {
+                throw new CannotGetJdbcConnectionException("database is down");
+            }
+            rows.addAndGet((invocation.getArguments().length - 1) / 4);
+            return 1;
+        }).when(jdbc).update(anyString(), any(Object[].class));
+
+        Path spoolDir = Files.createTempDirectory("message-spool");
+        MessageIngestBuffer buffer = new MessageIngestBuffer(jdbc, new ObjectMapper().registerModule(new JavaTimeModule()),
+                new SimpleMeterRegistry(), 100, 10, 20, 100, spoolDir.toString());
+        buffer.start();
+        buffer.replayOnStart();
+        try {
+            for (int i = 0; i < 3; i++) {
+                buffer.offer(new MessageIngestBuffer.PendingMessage("Name " + i, "a@b.c", "hello", OffsetDateTime.now()));
+            }
+            assertThat(eventually(() -> spoolFiles(spoolDir) > 0)).isTrue();
+            assertThat(rows.get()).isZero();
+
+            down.set(false);
+
+            assertThat(eventually(() -> rows.get() == 3 && spoolFiles(spoolDir) == 0)).isTrue();
+        } finally {
+            buffer.shutdown();
+        }
+    }
+
+    private static long spoolFiles(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(".ndjson")).count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,92 @@
+package com.lekhsewa.backend.services.preprocessing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CanvasPreprocessorTests {
+
+    @Test
+    void pooledBuffersGiveTheSameOutputAsFreshOnes() throws Exception {
+        CanvasPreprocessor pooled = preprocessor();
+        byte[][] canvases = {
+                canvas(400, 300, BufferedImage.TYPE_INT_ARGB, 40),
+                canvas(200, 120, BufferedImage.TYPE_INT_ARGB, 10),
+                canvas(150, 500, BufferedImage.TYPE_BYTE_GRAY, 30),
+                canvas(300, 300, BufferedImage.TYPE_BYTE_INDEXED, 60),
+                canvas(350, 250, BufferedImage.TYPE_INT_RGB, 20),
+                canvas(120, 90, BufferedImage.TYPE_INT_ARGB, 25),
+        };
+
+        for (byte[] canvas : canvases) {
+            for (int targetSize : new int[]{64, 0}) {
+                byte[] expected = pixels(preprocessor().preprocess(canvas, targetSize));
+                assertThat(pixels(pooled.preprocess(canvas, targetSize))).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void outputIsEightBitGrayscale() throws Exception {
+        BufferedImage out = ImageIO.read(new ByteArrayInputStream(preprocessor().preprocess(canvas(300, 200, BufferedImage.TYPE_INT_ARGB, 40), 64)));
+
+        assertThat(out.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+        assertThat(out.getWidth()).isEqualTo(64);
+        assertThat(out.getHeight()).isEqualTo(64);
+    }
+
+    @Test
+    void blankCanvasAndUndecodableBytesAreRejected() throws Exception {
+        CanvasPreprocessor preprocessor = preprocessor();
+
+        assertThatThrownBy(() -> preprocessor.preprocess(png(new BufferedImage(50, 50, BufferedImage.TYPE_INT_ARGB)), 64))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Canvas is empty");
+        assertThatThrownBy(() -> preprocessor.preprocess(new byte[]{1, 2, 3, 4}, 64))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Could not decode image");
+    }
+
+    private static CanvasPreprocessor preprocessor() {
+        return new CanvasPreprocessor(new SimpleMeterRegistry(), 200, 10, 1, 1_000_000);
+    }
+
+    // A white (or transparent) canvas with a dark stroke offset from the centre.
+    private static byte[] canvas(int width, int height, int type, int inset) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        if (type != BufferedImage.TYPE_INT_ARGB) {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+        }
+        g.setColor(Color.BLACK);
+        g.setStroke(new BasicStroke(6));
+        g.drawLine(inset, inset, width / 2, height - inset);
+        g.drawLine(width / 2, height - inset, width - inset, height / 3);
+        g.dispose();
+        return png(image);
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] pixels(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,84 @@
+package com.lekhsewa.backend.services.preprocessing;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GlyphSegmenterTests {
+
+    private final GlyphSegmenter segmenter = new GlyphSegmenter(200, 0.5, 0.3);
+
+    @Test
+    void lettersJoinedByTheHeadlineAreSplitIntoFullHeightStrips() throws IOException {
+        byte[] word = draw(200, 100, g -> {
+            g.fillRect(20, 20, 161, 5);   // shared headline
+            g.fillRect(40, 20, 11, 60);   // first letter body
+            g.fillRect(130, 20, 11, 60);  // second letter body
+        });
+
+        List<byte[]> glyphs = segmenter.split(word);
+
+        assertThat(glyphs).hasSize(2);
+        BufferedImage left = ImageIO.read(new ByteArrayInputStream(glyphs.get(0)));
+        BufferedImage right = ImageIO.read(new ByteArrayInputStream(glyphs.get(1)));
+        assertThat(left.getHeight()).isEqualTo(100);
+        assertThat(right.getHeight()).isEqualTo(100);
+        assertThat(left.getWidth() + right.getWidth()).isEqualTo(200);
+        // The cut falls in the gap, so each strip holds its whole letter and a share of the headline.
+        assertThat(left.getWidth()).isBetween(51, 130);
+        assertThat(isInk(left, 45, 50)).isTrue();
+        assertThat(isInk(right, 135 - left.getWidth(), 50)).isTrue();
+        assertThat(isInk(right, 0, 22)).isTrue();
+    }
+
+    @Test
+    void dotAboveTheHeadlineStaysWithItsLetter() throws IOException {
+        byte[] letter = draw(100, 100, g -> {
+            g.fillRect(10, 30, 81, 5);
+            g.fillRect(40, 30, 11, 60);
+            g.fillRect(44, 10, 3, 3);     // bindu
+        });
+
+        List<byte[]> glyphs = segmenter.split(letter);
+
+        assertThat(glyphs).containsExactly(letter);
+    }
+
+    @Test
+    void emptyCanvasIsRejected() throws IOException {
+        byte[] blank = draw(50, 50, g -> { });
+
+        assertThatThrownBy(() -> segmenter.split(blank)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static boolean isInk(BufferedImage image, int x, int y) {
+        return (image.getRaster().getSample(x, y, 0)) < 200;
+    }
+
+    private interface Painter {
+        void paint(Graphics2D g);
+    }
+
+    private static byte[] draw(int w, int h, Painter painter) throws IOException {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, w, h);
+        g.setColor(Color.BLACK);
+        painter.paint(g);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,101 @@
+package com.lekhsewa.backend.services.preprocessing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PngHeaderValidatorTests {
+
+    private final PngHeaderValidator validator = new PngHeaderValidator(4096, 1000, 250_000);
+
+    @Test
+    void validHeaderIsAccepted() throws Exception {
+        byte[] png = png(400, 300, 8, 6);
+
+        PngHeaderValidator.PngInfo info = validator.validate(png);
+
+        assertThat(info).isEqualTo(new PngHeaderValidator.PngInfo(400, 300, 8, 6));
+        assertThat(validator.validate(new MockMultipartFile("file", "a.png", "image/png", png))).isEqualTo(info);
+    }
+
+    @Test
+    void badSignatureIsRejected() {
+        byte[] png = png(10, 10, 8, 0);
+        png[1] = 'J';
+
+        assertRejected(png, "Only PNG allowed");
+        assertRejected(new byte[]{(byte) 0x89, 'P', 'N'}, "Only PNG allowed");
+    }
+
+    @Test
+    void truncatedIhdrIsRejected() {
+        assertRejected(Arrays.copyOf(png(10, 10, 8, 0), 20), "Malformed PNG: truncated IHDR chunk");
+    }
+
+    @Test
+    void missingIhdrIsRejected() {
+        byte[] png = png(10, 10, 8, 0);
+        png[12] = 'I';
+        png[13] = 'D';
+        png[14] = 'A';
+        png[15] = 'T';
+
+        assertRejected(png, "Malformed PNG: missing IHDR chunk");
+    }
+
+    @Test
+    void oversizedDimensionsAreRejected() {
+        assertRejected(png(1001, 10, 8, 0), "Image is 1001x10, limit is 1000 per side");
+        assertRejected(png(10, 1001, 8, 0), "Image is 10x1001, limit is 1000 per side");
+        // Unsigned width that would be negative as an int.
+        assertRejected(png(-1, 10, 8, 0), "Image is 4294967295x10, limit is 1000 per side");
+    }
+
+    @Test
+    void tooManyPixelsAreRejected() {
+        assertRejected(png(600, 600, 8, 0), "Image has 360000 pixels, limit is 250000");
+    }
+
+    @Test
+    void zeroDimensionIsRejected() {
+        assertRejected(png(0, 10, 8, 0), "Malformed PNG: zero width or height");
+    }
+
+    @Test
+    void unsupportedBitDepthIsRejected() {
+        assertRejected(png(10, 10, 16, 3), "Malformed PNG: bit depth 16 is invalid for color type 3");
+        assertRejected(png(10, 10, 4, 2), "Malformed PNG: bit depth 4 is invalid for color type 2");
+        assertRejected(png(10, 10, 8, 5), "Malformed PNG: bit depth 8 is invalid for color type 5");
+    }
+
+    @Test
+    void emptyAndOversizedUploadsAreRejected() {
+        assertRejected(new byte[0], "Image is empty");
+        assertRejected(Arrays.copyOf(png(10, 10, 8, 0), 4097), "Image is 4097 bytes, limit is 4096");
+    }
+
+    private void assertRejected(byte[] bytes, String message) {
+        assertThatThrownBy(() -> validator.validate(bytes))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage(message);
+    }
+
+    // Signature plus an IHDR chunk; nothing past the header is read, so no CRC or data is needed.
+    private static byte[] png(int width, int height, int bitDepth, int colorType) {
+        return ByteBuffer.allocate(8 + 4 + 4 + 13)
+                .put(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})
+                .putInt(13)
+                .put(new byte[]{'I', 'H', 'D', 'R'})
+                .putInt(width)
+                .putInt(height)
+                .put((byte) bitDepth)
+                .put((byte) colorType)
+                .put(new byte[3])
+                .array();
+    }
+}
@@ -0,0 +1,100 @@
+package com.lekhsewa.backend.services.preprocessing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StrokeRasterizerTests {
+
+    private final StrokeRasterizer rasterizer = new StrokeRasterizer(65536, 4096, 20000, 128, 10);
+
+    @Test
+    void encodeAndDecodeRoundTrip() {
+        StrokeRasterizer.Drawing drawing = new StrokeRasterizer.Drawing(300, 200, 6, List.of(
+                new int[]{10, 20, 0, 40, 25, 16, 35, 5, 33},
+                new int[]{150, 150, 400},
+                new int[]{300, 0, 900, 0, 200, 950}));
+
+        StrokeRasterizer.Drawing decoded = rasterizer.decode(StrokeRasterizer.encode(drawing));
+
+        assertThat(decoded.width()).isEqualTo(300);
+        assertThat(decoded.height()).isEqualTo(200);
+        assertThat(decoded.lineWidth()).isEqualTo(6);
+        assertThat(decoded.strokes()).hasSize(3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(decoded.strokes().get(i)).containsExactly(drawing.strokes().get(i));
+        }
+    }
+
+    @Test
+    void pointCountThatWouldOverflowTheTotalIsRejected() {
+        ByteArrayOutputStream out = header(100, 100, 4, 2);
+        varint(out, 1);
+        varint(out, 1);
+        varint(out, 1);
+        varint(out, 0);
+        varint(out, Integer.MAX_VALUE);
+
+        assertThatThrownBy(() -> rasterizer.decode(out.toByteArray()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("points");
+    }
+
+    @Test
+    void pointCountLargerThanTheUploadIsRejectedBeforeAllocating() {
+        ByteArrayOutputStream out = header(100, 100, 4, 1);
+        varint(out, 19999);
+        varint(out, 1);
+
+        assertThatThrownBy(() -> rasterizer.decode(out.toByteArray()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Truncated");
+    }
+
+    @Test
+    void malformedInputIsRejected() {
+        assertThatThrownBy(() -> rasterizer.decode(new byte[]{'P', 'N', 'G'}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rasterizer.decode(new byte[]{'L', 'S', 1, (byte) 0x80}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rasterizer.decode(header(100, 100, 4, 0).toByteArray()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Canvas is empty");
+
+        byte[] valid = StrokeRasterizer.encode(new StrokeRasterizer.Drawing(100, 100, 4, List.of(new int[]{1, 1, 0})));
+        byte[] trailing = Arrays.copyOf(valid, valid.length + 1);
+        assertThatThrownBy(() -> rasterizer.decode(trailing))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void canvasLimitsAreChecked() {
+        rasterizer.validateCanvas(4096, 1, 1);
+        assertThatThrownBy(() -> rasterizer.validateCanvas(4097, 100, 4)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rasterizer.validateCanvas(0, 100, 4)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rasterizer.validateCanvas(100, 100, 101)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ByteArrayOutputStream header(int width, int height, int lineWidth, int strokes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{'L', 'S', 1});
+        varint(out, width);
+        varint(out, height);
+        varint(out, lineWidth);
+        varint(out, strokes);
+        return out;
+    }
+
+    private static void varint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,56 @@
+package com.lekhsewa.backend.services.recognition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GlyphJoinerTests {
+
+    @Test
+    void shortIIsMovedAfterTheConsonantItIsWrittenBefore() {
+        // Drawn as ि न (visual order), stored as नि.
+        assertThat(GlyphJoiner.join(List.of("ि", "न", "क"))).isEqualTo("निक");
+    }
+
+    @Test
+    void shortIFollowsAWholeConjunct() {
+        assertThat(GlyphJoiner.join(List.of("ि", "स्त", "र"))).isEqualTo("स्तिर");
+    }
+
+    @Test
+    void trailingShortIIsKeptAndGlyphsAreStripped() {
+        assertThat(GlyphJoiner.join(List.of(" क ", "ि"))).isEqualTo("कि");
+    }
+
+    @Test
+    void shortIFollowsAConjunctSplitAcrossGlyphs() {
+        assertThat(GlyphJoiner.join(List.of("ि", "स्", "त", "र"))).isEqualTo("स्तिर");
+    }
+
+    @Test
+    void glyphReadInVisualOrderIsReordered() {
+        assertThat(GlyphJoiner.join(List.of("िन", "क"))).isEqualTo("निक");
+    }
+
+    @Test
+    void separatelyRecognizedMarksAreStoredInUnicodeOrder() {
+        assertThat(GlyphJoiner.join(List.of("क", "ं", "ी"))).isEqualTo("कीं");
+        assertThat(GlyphJoiner.join(List.of("ि", "ज", "़"))).isEqualTo("ज\u093C\u093F");
+    }
+
+    @Test
+    void vowelsDrawnInTwoPartsAreComposed() {
+        assertThat(GlyphJoiner.join(List.of("क", "ा", "े"))).isEqualTo("को");
+        assertThat(GlyphJoiner.join(List.of("क", "ै", "ा"))).isEqualTo("कौ");
+        assertThat(GlyphJoiner.join(List.of("अ", "ा", "म"))).isEqualTo("आम");
+        assertThat(GlyphJoiner.join(List.of("अ", "ा", "े"))).isEqualTo("ओ");
+    }
+
+    @Test
+    void resultIsNfc() {
+        // क + nukta (U+0915 U+093C) stays decomposed under NFC, a precomposed U+0958 does not survive.
+        assertThat(GlyphJoiner.join(List.of("क़"))).isEqualTo("क़");
+    }
+}
@@ -0,0 +1,197 @@
+package com.lekhsewa.backend.services.recognition;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrchestratingRecognitionEngineTests {
+
+    private static final byte[] CANVAS = {1, 2, 3};
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecognitionAdmission admission = new RecognitionAdmission(meterRegistry, 8, 32, 5000, 2, 30000);
+    private final List<OrchestratingRecognitionEngine> created = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        created.forEach(OrchestratingRecognitionEngine::close);
+    }
+
+    @Test
+    void confidentPrimaryIsReturnedWithoutAskingTheFallback() throws Exception {
+        StubEngine primary = new StubEngine("primary", true, call -> result("क", 0.9));
+        StubEngine fallback = new StubEngine("fallback", false, call -> result("ख", null));
+
+        RecognitionResult result = orchestrator(primary, fallback, 1000).recognize(CANVAS, "image/png");
+
+        assertThat(result.word()).isEqualTo("क");
+        assertThat(result.reason()).isEqualTo("primary-confident");
+        assertThat(fallback.calls()).isZero();
+    }
+
+    @Test
+    void lowConfidenceEscalatesToTheFallback() throws Exception {
+        StubEngine primary = new StubEngine("primary", true, call -> result("क", 0.3));
+        StubEngine fallback = new StubEngine("fallback", false, call -> result("ख", null));
+
+        RecognitionResult result = orchestrator(primary, fallback, 1000).recognize(CANVAS, "image/png");
+
+        assertThat(result.word()).isEqualTo("ख");
+        assertThat(result.engine()).isEqualTo("fallback");
+        assertThat(result.reason()).isEqualTo("primary-low-confidence");
+    }
+
+    @Test
+    void unrecognizedFallbackKeepsThePrimaryGuess() throws Exception {
+        StubEngine primary = new StubEngine("primary", true, call -> result("क", 0.3));
+        StubEngine fallback = new StubEngine("fallback", false, call -> result("Not Recognized.Try Again.", null));
+
+        RecognitionResult result = orchestrator(primary, fallback, 1000).recognize(CANVAS, "image/png");
+
+        assertThat(result.word()).isEqualTo("क");
+        assertThat(result.reason()).isEqualTo("primary-low-confidence,fallback-unrecognized");
+    }
+
+    @Test
+    void failingPrimaryGoesStraightToTheFallback() throws Exception {
+        StubEngine primary = new StubEngine("primary", true, call -> {
+            throw new IllegalStateException("model crashed");
+        });
+        StubEngine fallback = new StubEngine("fallback", false, call -> result("ख", null));
+
+        RecognitionResult result = orchestrator(primary, fallback, 1000).recognize(CANVAS, "image/png");
+
+        assertThat(result.engine()).isEqualTo("fallback");
+        assertThat(result.reason()).isEqualTo("primary-failed");
+    }
+
+    @Test
+    void throttledFallbackKeepsThePrimaryGuessAndOpensItsBreaker() throws Exception {
+        StubEngine primary = new StubEngine("primary", true, call -> result("क", 0.3));
+        StubEngine fallback = new StubEngine("fallback", false, call -> {
+            throw new EngineThrottledException("fallback", null);
+        });
+        OrchestratingRecognitionEngine orchestrator = orchestrator(primary, fallback, 1000);
+
+        assertThat(orchestrator.recognize(CANVAS, "image/png").reason()).isEqualTo("primary-low-confidence,fallback-throttled");
+        assertThat(orchestrator.recognize(CANVAS, "image/png").reason()).isEqualTo("primary-low-confidence,fallback-throttled");
+        RecognitionResult third = orchestrator.recognize(CANVAS, "image/png");
+
+        // Two throttles open the fallback's breaker; the third request does not reach it.
+        assertThat(third.word()).isEqualTo("क");
+        assertThat(third.reason()).isEqualTo("primary-low-confidence,fallback-failed");
+        assertThat(fallback.calls()).isEqualTo(2);
+    }
+
+    @Test
+    void slowRemoteCallIsHedgedAndTheFasterAnswerWins() throws Exception {
+        StubEngine primary = new StubEngine("primary", false, call -> {
+            if (call == 1) {
+                Thread.sleep(2000);
+            }
+            return result("क", 0.9);
+        });
+        StubEngine fallback = new StubEngine("fallback", false, call -> result("ख", null));
+
+        long start = System.nanoTime();
+        RecognitionResult result = orchestrator(primary, fallback, 50).recognize(CANVAS, "image/png");
+
+        assertThat(result.word()).isEqualTo("क");
+        assertThat(primary.calls()).isEqualTo(2);
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(1500);
+    }
+
+    @Test
+    void hedgeReturnsTheCallThatSucceedsWhenTheOtherFails() throws Exception {
+        StubEngine primary = new StubEngine("primary", false, call -> {
+            if (call == 1) {
+                Thread.sleep(100);
+                throw new IllegalStateException("upstream reset");
+            }
+            Thread.sleep(150);
+            return result("क", 0.9);
+        });
+        StubEngine fallback = new StubEngine("fallback", false, call -> result("ख", null));
+
+        RecognitionResult result = orchestrator(primary, fallback, 20).recognize(CANVAS, "image/png");
+
+        assertThat(result.engine()).isEqualTo("primary");
+        assertThat(result.reason()).isEqualTo("primary-confident");
+    }
+
+    @Test
+    void slowInProcessCallIsNotHedged() throws Exception {
+        StubEngine primary = new StubEngine("primary", true, call -> {
+            Thread.sleep(200);
+            return result("क", 0.9);
+        });
+        StubEngine fallback = new StubEngine("fallback", false, call -> result("ख", null));
+
+        orchestrator(primary, fallback, 20).recognize(CANVAS, "image/png");
+
+        assertThat(primary.calls()).isEqualTo(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private OrchestratingRecognitionEngine orchestrator(StubEngine primary, StubEngine fallback, long hedgeInitialMillis) {
+        RecognitionEngineRegistry registry = new RecognitionEngineRegistry(List.of(primary, fallback), "primary", false);
+        ObjectProvider<RecognitionEngineRegistry> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(registry);
+        // Stub engines take the stored bytes as they are, so no preprocessing is needed.
+        EngineInputPreparer inputPreparer = new EngineInputPreparer(null, null);
+        OrchestratingRecognitionEngine orchestrator = new OrchestratingRecognitionEngine(provider, inputPreparer, admission, meterRegistry,
+                "primary", "fallback", 0.6, 0.95, hedgeInitialMillis, 10, 4);
+        created.add(orchestrator);
+        return orchestrator;
+    }
+
+    private static RecognitionResult result(String word, Double confidence) {
+        return new RecognitionResult(word, confidence, null);
+    }
+
+    private interface Behavior {
+        RecognitionResult answer(int call) throws Exception;
+    }
+
+    private static final class StubEngine implements RecognitionEngine {
+        private final String name;
+        private final boolean inProcess;
+        private final Behavior behavior;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        StubEngine(String name, boolean inProcess, Behavior behavior) {
+            this.name = name;
+            this.inProcess = inProcess;
+            this.behavior = behavior;
+        }
+
+        int calls() {
+            return calls.get();
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public boolean inProcess() {
+            return inProcess;
+        }
+
+        @Override
+        public RecognitionResult recognize(byte[] imageBytes, String contentType) throws Exception {
+            RecognitionResult result = behavior.answer(calls.incrementAndGet());
+            return new RecognitionResult(result.word(), result.confidence(), name);
+        }
+    }
+}
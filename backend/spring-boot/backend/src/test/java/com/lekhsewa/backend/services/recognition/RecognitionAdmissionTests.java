@@ -0,0 +1,132 @@
+package com.lekhsewa.backend.services.recognition;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecognitionAdmissionTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void callIsRejectedWhenTheQueueIsFull() {
+        RecognitionAdmission admission = new RecognitionAdmission(meterRegistry, 1, 0, 5000, 2, 30000);
+        CompletableFuture<String> holder = new CompletableFuture<>();
+        admission.callAsync("onnx", () -> holder);
+
+        assertThatThrownBy(() -> admission.call("onnx", () -> "क"))
+                .isInstanceOf(RecognitionRejectedException.class)
+                .hasMessage("Recognition queue is full");
+        assertThat(admission.queued()).isZero();
+        assertThat(meterRegistry.counter("recognition.admission.rejected", "engine", "onnx").count()).isEqualTo(1);
+    }
+
+    @Test
+    void callGivesUpAfterTheMaximumWait() {
+        RecognitionAdmission admission = new RecognitionAdmission(meterRegistry, 1, 1, 50, 2, 30000);
+        admission.callAsync("onnx", CompletableFuture::new);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> admission.call("onnx", () -> "क"))
+                .isInstanceOf(RecognitionRejectedException.class)
+                .hasMessage("Timed out waiting for a recognition slot");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(50);
+        assertThat(admission.queued()).isZero();
+        assertThat(admission.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void queuedAsyncCallerFailsAfterTheMaximumWait() {
+        RecognitionAdmission admission = new RecognitionAdmission(meterRegistry, 1, 1, 50, 2, 30000);
+        admission.callAsync("onnx", CompletableFuture::new);
+        AtomicBoolean started = new AtomicBoolean();
+
+        CompletableFuture<String> waiting = admission.callAsync("onnx", () -> {
+            started.set(true);
+            return CompletableFuture.completedFuture("क");
+        });
+
+        assertThatThrownBy(() -> waiting.get(2, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(RecognitionRejectedException.class);
+        assertThat(started).isFalse();
+        assertThat(admission.queued()).isZero();
+    }
+
+    @Test
+    void releasedPermitIsHandedToTheQueuedAsyncCaller() throws Exception {
+        RecognitionAdmission admission = new RecognitionAdmission(meterRegistry, 1, 4, 5000, 2, 30000);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        AtomicBoolean secondStarted = new AtomicBoolean();
+
+        CompletableFuture<String> firstResult = admission.callAsync("onnx", () -> first);
+        CompletableFuture<String> secondResult = admission.callAsync("onnx", () -> {
+            secondStarted.set(true);
+            return second;
+        });
+        assertThat(secondStarted).isFalse();
+        assertThat(admission.queued()).isEqualTo(1);
+
+        first.complete("क");
+        assertThat(firstResult.get(1, TimeUnit.SECONDS)).isEqualTo("क");
+        assertThat(secondStarted).isTrue();
+        assertThat(admission.queued()).isZero();
+        assertThat(admission.inFlight()).isEqualTo(1);
+
+        second.complete("ख");
+        assertThat(secondResult.get(1, TimeUnit.SECONDS)).isEqualTo("ख");
+        assertThat(admission.inFlight()).isZero();
+    }
+
+    @Test
+    void successfulProbeClosesTheBreaker() throws Exception {
+        RecognitionAdmission admission = new RecognitionAdmission(meterRegistry, 4, 4, 5000, 2, 50);
+        throttle(admission, "remote");
+        throttle(admission, "remote");
+        assertThatThrownBy(() -> admission.call("remote", () -> "क"))
+                .isInstanceOf(RecognitionRejectedException.class)
+                .hasMessageContaining("cooling down");
+
+        Thread.sleep(80);
+        CompletableFuture<String> probe = new CompletableFuture<>();
+        CompletableFuture<String> probeResult = admission.callAsync("remote", () -> probe);
+        // Only the probe goes through while the breaker is half-open.
+        assertThatThrownBy(() -> admission.call("remote", () -> "क"))
+                .isInstanceOf(RecognitionRejectedException.class);
+
+        probe.complete("क");
+        assertThat(probeResult.get(1, TimeUnit.SECONDS)).isEqualTo("क");
+        assertThat(admission.call("remote", () -> "ख")).isEqualTo("ख");
+        assertThat(admission.call("remote", () -> "ग")).isEqualTo("ग");
+    }
+
+    @Test
+    void throttledProbeOpensTheBreakerAgain() throws Exception {
+        RecognitionAdmission admission = new RecognitionAdmission(meterRegistry, 4, 4, 5000, 2, 50);
+        throttle(admission, "remote");
+        throttle(admission, "remote");
+
+        Thread.sleep(80);
+        throttle(admission, "remote");
+
+        assertThatThrownBy(() -> admission.call("remote", () -> "क"))
+                .isInstanceOf(RecognitionRejectedException.class)
+                .hasMessageContaining("cooling down");
+        // Other engines keep their own breaker.
+        assertThat(admission.call("onnx", () -> "क")).isEqualTo("क");
+    }
+
+    private static void throttle(RecognitionAdmission admission, String engine) {
+        assertThatThrownBy(() -> admission.call(engine, () -> {
+            throw new EngineThrottledException(engine, null);
+        })).isInstanceOf(EngineThrottledException.class);
+    }
+}
@@ -0,0 +1,42 @@
+package com.lekhsewa.backend.services.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NepaliTextTests {
+
+    @Test
+    void romanizedAndDevanagariSpellingsFoldToTheSameKey() {
+        String key = NepaliText.fold(NepaliText.normalize("नागरिकता"));
+
+        assertThat(NepaliText.fold(NepaliText.normalize("nagarikta"))).isEqualTo(key);
+        assertThat(NepaliText.fold(NepaliText.normalize("naagarikataa"))).isEqualTo(key);
+        assertThat(NepaliText.fold(NepaliText.normalize("Nagarikta"))).isEqualTo(key);
+    }
+
+    @Test
+    void halantJoinsConsonantsWithoutAnInherentVowel() {
+        assertThat(NepaliText.transliterate("विद्यालय")).isEqualTo("vidyaalaya");
+        assertThat(NepaliText.transliterate("क्षमा")).isEqualTo("kshamaa");
+        assertThat(NepaliText.fold(NepaliText.normalize("विद्यालय")))
+                .isEqualTo(NepaliText.fold(NepaliText.normalize("vidyalaya")));
+    }
+
+    @Test
+    void nuktaIsDroppedAndDoesNotAddAVowel() {
+        // Precomposed U+095C and the decomposed sequence normalize to the same text.
+        String precomposed = NepaliText.normalize("ड़ा");
+        String decomposed = NepaliText.normalize("ड़ा");
+
+        assertThat(precomposed).isEqualTo(decomposed);
+        assertThat(NepaliText.transliterate(decomposed)).isEqualTo("daa");
+        assertThat(NepaliText.transliterate("पढ़्")).isEqualTo("padh");
+    }
+
+    @Test
+    void aspiratesAndLongVowelsFold() {
+        assertThat(NepaliText.fold("bhumi")).isEqualTo(NepaliText.fold("boomi"));
+        assertThat(NepaliText.fold("phaaram")).isEqualTo(NepaliText.fold("faram"));
+    }
+}
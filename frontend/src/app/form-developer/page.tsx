@@ -46,7 +46,7 @@ export default function FormDeveloperSearchPage() {
         if (debouncedQuery.trim()) {
             setIsSuggestLoading(true);
             getFormSuggestions(debouncedQuery)
-                .then(data => setSuggestions(data.content || []))
+                .then(data => setSuggestions(data || []))
                 .catch(() => toast.error("Could not load suggestions"))
                 .finally(() => setIsSuggestLoading(false));
         } else {